@@ -5,26 +5,17 @@
  */
 
 import java.io.IOException;
-import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.security.InvalidKeyException;
-import java.security.PrivateKey;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
-import java.time.Instant;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
 import io.grpc.ManagedChannel;
-import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
-import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
 import org.hyperledger.fabric.client.CallOption;
 import org.hyperledger.fabric.client.CommitException;
 import org.hyperledger.fabric.client.CommitStatusException;
@@ -36,107 +27,135 @@ import org.hyperledger.fabric.client.Network;
 import org.hyperledger.fabric.client.Status;
 import org.hyperledger.fabric.client.SubmitException;
 import org.hyperledger.fabric.client.SubmittedTransaction;
-import org.hyperledger.fabric.client.identity.Identities;
-import org.hyperledger.fabric.client.identity.Identity;
-import org.hyperledger.fabric.client.identity.Signer;
-import org.hyperledger.fabric.client.identity.Signers;
-import org.hyperledger.fabric.client.identity.X509Identity;
 import org.hyperledger.fabric.protos.gateway.ErrorDetail;
 
 public final class App {
-	private static final String mspID = "Org1MSP";
 	private static final String channelName = "mychannel";
 	private static final String chaincodeName = "basic";
-
-	// Path to crypto materials.
-	private static final Path cryptoPath = Paths.get("..", "..", "test-network", "organizations", "peerOrganizations", "org1.example.com");
-	// Path to user certificate.
-	private static final Path certPath = cryptoPath.resolve(Paths.get("users", "User1@org1.example.com", "msp", "signcerts", "cert.pem"));
-	// Path to user private key directory.
-	private static final Path keyDirPath = cryptoPath.resolve(Paths.get("users", "User1@org1.example.com", "msp", "keystore"));
-	// Path to peer tls certificate.
-	private static final Path tlsCertPath = cryptoPath.resolve(Paths.get("peers", "peer0.org1.example.com", "tls", "ca.crt"));
-
-	// Gateway peer end point.
-	private static final String peerEndpoint = "localhost:7051";
-	private static final String overrideAuth = "peer0.org1.example.com";
+	// Port on which Prometheus can scrape client metrics from /metrics while the application runs.
+	private static final int metricsPort = 9464;
+	// Node ID used in generated asset IDs, from 0 to 1023. Every concurrently running client must be given a
+	// different node ID, otherwise they can generate the same asset ID.
+	private static final int nodeId = Integer.parseInt(envOrDefault("NODE_ID", "0"));
+	private static final long evaluateTimeoutSeconds = 5;
 
 	private final Contract contract;
-	private final String assetId = "asset" + Instant.now().toEpochMilli();
+	private final RetryingSubmitter submitter;
+	private final InstrumentedContract instrumentedContract;
+	private final HedgedEvaluator hedgedEvaluator;
+	private final MetricsReporter metricsReporter;
+	private final AssetKeyIndex assetKeys;
+	private final Prevalidator prevalidator;
+	private final LedgerHeightTracker ledgerHeight;
+	private final ReadYourWritesSession session;
+	private final AssetIdGenerator assetIds = new AssetIdGenerator(nodeId);
+	private final String assetId = assetIds.nextAssetId();
 	private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
 	public static void main(final String[] args) throws Exception {
 		// The gRPC client connection should be shared by all Gateway connections to
 		// this endpoint.
-		ManagedChannel channel = newGrpcConnection();
-
-		Gateway.Builder builder = Gateway.newInstance().identity(newIdentity()).signer(newSigner()).connection(channel)
-				// Default timeouts for different gRPC calls
-				.evaluateOptions(CallOption.deadlineAfter(5, TimeUnit.SECONDS))
+		ManagedChannel channel = Connections.newGrpcConnection();
+		// A second connection, to a peer in another organization, to which slow evaluate requests are hedged.
+		ManagedChannel hedgeChannel = Connections.newHedgeGrpcConnection();
+
+		Gateway.Builder builder = Gateway.newInstance()
+				.identity(Connections.newIdentity())
+				.signer(Connections.newSigner())
+				.connection(channel)
+				// Default timeouts for different gRPC calls. Evaluate requests made through the hedged evaluator
+				// use a deadline adapted to observed latency instead, with the default as its upper bound.
+				.evaluateOptions(CallOption.deadlineAfter(evaluateTimeoutSeconds, TimeUnit.SECONDS))
 				.endorseOptions(CallOption.deadlineAfter(15, TimeUnit.SECONDS))
 				.submitOptions(CallOption.deadlineAfter(5, TimeUnit.SECONDS))
 				.commitStatusOptions(CallOption.deadlineAfter(1, TimeUnit.MINUTES));
 
-		try (Gateway gateway = builder.connect()) {
-			new App(gateway).run();
+		try (Gateway gateway = builder.connect(); Gateway hedgeGateway = builder.connection(hedgeChannel).connect()) {
+			new App(gateway, hedgeGateway).run();
 		} finally {
 			channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+			hedgeChannel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
 		}
 	}
 
-	private static ManagedChannel newGrpcConnection() throws IOException, CertificateException {
-		Reader tlsCertReader = Files.newBufferedReader(tlsCertPath);
-		X509Certificate tlsCert = Identities.readX509Certificate(tlsCertReader);
-
-		return NettyChannelBuilder.forTarget(peerEndpoint)
-				.sslContext(GrpcSslContexts.forClient().trustManager(tlsCert).build()).overrideAuthority(overrideAuth)
-				.build();
-	}
-
-	private static Identity newIdentity() throws IOException, CertificateException {
-		Reader certReader = Files.newBufferedReader(certPath);
-		X509Certificate certificate = Identities.readX509Certificate(certReader);
-
-		return new X509Identity(mspID, certificate);
-	}
-
-	private static Signer newSigner() throws IOException, InvalidKeyException {
-		Path keyPath = Files.list(keyDirPath)
-				.findFirst()
-				.orElseThrow();
-		Reader keyReader = Files.newBufferedReader(keyPath);
-		PrivateKey privateKey = Identities.readPrivateKey(keyReader);
-
-		return Signers.newPrivateKeySigner(privateKey);
+	private static String envOrDefault(final String name, final String defaultValue) {
+		String value = System.getenv(name);
+		return value != null ? value : defaultValue;
 	}
 
-	public App(final Gateway gateway) {
+	public App(final Gateway gateway, final Gateway hedgeGateway) {
 		// Get a network instance representing the channel where the smart contract is
 		// deployed.
 		Network network = gateway.getNetwork(channelName);
 
 		// Get the smart contract from the network.
 		contract = network.getContract(chaincodeName);
+
+		// Resubmit transactions that fail to commit due to conflicting updates from other clients.
+		RetryPolicy retryPolicy = new RetryPolicy(5, Duration.ofMillis(100), Duration.ofSeconds(2));
+		submitter = new RetryingSubmitter(contract, retryPolicy, new ConflictMetrics(8, retryPolicy.getMaxAttempts()));
+
+		// Record per-phase latency, payload size and result code metrics for transactions.
+		instrumentedContract = new InstrumentedContract(contract, new TransactionMetrics());
+		// Send evaluate requests that are slower than most to a second peer as well, and use the first response.
+		hedgedEvaluator = new HedgedEvaluator(
+				List.of(contract, hedgeGateway.getNetwork(channelName).getContract(chaincodeName)), 95,
+				Duration.ofMillis(10), Duration.ofMillis(500), Duration.ofSeconds(evaluateTimeoutSeconds));
+
+		metricsReporter = new MetricsReporter(List.of(instrumentedContract.getMetrics()::render,
+				submitter.getMetrics()::render));
+
+		// Predict existence check failures locally from the asset keys seen in block events.
+		assetKeys = new AssetKeyIndex(network, chaincodeName, 10_000, 0.01);
+		prevalidator = new Prevalidator(contract, assetKeys, Prevalidator.Mode.FLAG);
+
+		// Ensure that reads observe the client's own committed writes, without sleeping or polling.
+		ledgerHeight = new LedgerHeightTracker(network);
+		session = new ReadYourWritesSession(List.of(new ReadYourWritesSession.Replica(contract, ledgerHeight)),
+				Duration.ofSeconds(30));
 	}
 
-	public void run() throws GatewayException, CommitException {
-		// Initialize a set of asset data on the ledger using the chaincode 'InitLedger' function.
-		initLedger();
+	public void run() throws GatewayException, CommitException, InterruptedException, TimeoutException, IOException {
+		// Load the asset keys currently on the ledger and follow updates to them.
+		assetKeys.load(contract);
+		ledgerHeight.start();
+
+		// Publish metrics for scraping, and log a summary periodically for long runs.
+		metricsReporter.serveHttp(metricsPort);
+		metricsReporter.logEvery(Duration.ofSeconds(30),
+				List.of(submitter.getMetrics()::summary, instrumentedContract.getMetrics()::summary));
+
+		try {
+			// Initialize a set of asset data on the ledger using the chaincode 'InitLedger' function.
+			initLedger();
 
-		// Return all the current assets on the ledger.
-		getAllAssets();
+			// Return all the current assets on the ledger.
+			getAllAssets();
 
-		// Create a new asset on the ledger.
-		createAsset();
+			// Create a new asset on the ledger.
+			createAsset();
 
-		// Update an existing asset asynchronously.
-		transferAssetAsync();
+			// Update an existing asset asynchronously.
+			transferAssetAsync();
 
-		// Get the asset details by assetID.
-		readAssetById();
+			// Get the asset details by assetID.
+			readAssetById();
 
-		// Update an asset which does not exist.
-		updateNonExistentAsset();
+			// Update an asset which does not exist.
+			updateNonExistentAsset();
+		} finally {
+			assetKeys.close();
+			ledgerHeight.close();
+			hedgedEvaluator.close();
+			metricsReporter.close();
+		}
+
+		System.out.println("\n*** Commit conflict summary:\n" + submitter.getMetrics().summary());
+		System.out.println("*** Transaction latency summary:\n" + instrumentedContract.getMetrics().summary());
+		System.out.println("*** Pre-validation summary:\n" + prevalidator.summary());
+		System.out.println("*** Session summary:\n" + session.summary());
+		System.out.println("*** Hedged evaluate summary:\nRequests: " + hedgedEvaluator.getRequestCount() + ", hedged: "
+				+ hedgedEvaluator.getHedgedCount());
 	}
 	
 	/**
@@ -147,7 +166,7 @@ public final class App {
 	private void initLedger() throws EndorseException, SubmitException, CommitStatusException, CommitException {
 		System.out.println("\n--> Submit Transaction: InitLedger, function creates the initial set of assets on the ledger");
 
-		contract.submitTransaction("InitLedger");
+		submitter.submitTransaction("InitLedger");
 
 		System.out.println("*** Transaction committed successfully");
 	}
@@ -155,12 +174,17 @@ public final class App {
 	/**
 	 * Evaluate a transaction to query ledger state.
 	 */
-	private void getAllAssets() throws GatewayException {
+	private void getAllAssets() throws GatewayException, InterruptedException {
 		System.out.println("\n--> Evaluate Transaction: GetAllAssets, function returns all the current assets on the ledger");
 		
-		byte[] result = contract.evaluateTransaction("GetAllAssets");
+		// Hedge the query to the second peer if the first is slow to respond.
+		byte[] result = hedgedEvaluator.evaluateTransaction("GetAllAssets");
 		
-		System.out.println("*** Result: " + prettyJson(result));
+		// Decode assets one at a time rather than building a JSON tree of the whole, potentially large, result.
+		System.out.println("*** Result:");
+		try (AssetReader assets = new AssetReader(result)) {
+			assets.forEachRemaining(asset -> System.out.println(asset));
+		}
 	}
 
 	private String prettyJson(final byte[] json) {
@@ -179,7 +203,7 @@ public final class App {
 	private void createAsset() throws EndorseException, SubmitException, CommitStatusException, CommitException {
 		System.out.println("\n--> Submit Transaction: CreateAsset, creates new asset with ID, Color, Size, Owner and AppraisedValue arguments");
 
-		contract.submitTransaction("CreateAsset", assetId, "yellow", "5", "Tom", "1300");
+		submitter.submitTransaction("CreateAsset", assetId, "yellow", "5", "Tom", "1300");
 
 		System.out.println("*** Transaction committed successfully");
 	}
@@ -192,11 +216,7 @@ public final class App {
 	private void transferAssetAsync() throws EndorseException, SubmitException, CommitStatusException {
 		System.out.println("\n--> Async Submit Transaction: TransferAsset, updates existing asset owner");
 		
-		SubmittedTransaction commit = contract.newProposal("TransferAsset")
-				.addArguments(assetId, "Saptha")
-				.build()
-				.endorse()
-				.submitAsync();
+		SubmittedTransaction commit = instrumentedContract.submitAsync("TransferAsset", assetId, "Saptha");
 
 		byte[] result = commit.getResult();
 		String oldOwner = new String(result, StandardCharsets.UTF_8);
@@ -204,19 +224,21 @@ public final class App {
 		System.out.println("*** Successfully submitted transaction to transfer ownership from " + oldOwner + " to Saptha");
 		System.out.println("*** Waiting for transaction commit");
 		
-		Status status = commit.getStatus();
+		Status status = instrumentedContract.getStatus("TransferAsset", commit);
 		if (!status.isSuccessful()) {
 			throw new RuntimeException("Transaction " + status.getTransactionId() +
 					" failed to commit with status code " + status.getCode());
 		}
+		session.recordCommit(status);
 		
 		System.out.println("*** Transaction committed successfully");
 	}
 
-	private void readAssetById() throws GatewayException {
+	private void readAssetById() throws GatewayException, TimeoutException {
 		System.out.println("\n--> Evaluate Transaction: ReadAsset, function returns asset attributes");
 		
-		byte[] evaluateResult = contract.evaluateTransaction("ReadAsset", assetId);
+		// Evaluate once the peer has committed the transfer, so that the result includes the new owner.
+		byte[] evaluateResult = session.evaluateTransaction("ReadAsset", assetId);
 		
 		System.out.println("*** Result:" + prettyJson(evaluateResult));
 	}
@@ -229,7 +251,8 @@ public final class App {
 		try {
 			System.out.println("\n--> Submit Transaction: UpdateAsset asset70, asset70 does not exist and should return an error");
 			
-			contract.submitTransaction("UpdateAsset", "asset70", "blue", "5", "Tomoko", "300");
+			// Pre-validation flags the request as doomed, and the outcome is counted in the pre-validation summary.
+			prevalidator.submitTransaction("UpdateAsset", "asset70", "blue", "5", "Tomoko", "300");
 			
 			System.out.println("******** FAILED to return an error");
 		} catch (EndorseException | SubmitException | CommitStatusException e) {
@@ -250,6 +273,8 @@ public final class App {
 			e.printStackTrace(System.out);
 			System.out.println("Transaction ID: " + e.getTransactionId());
 			System.out.println("Status code: " + e.getCode());
+		} catch (Prevalidator.RejectedException e) {
+			System.out.println("*** Successfully caught the error: " + e);
 		}
 	}
 }
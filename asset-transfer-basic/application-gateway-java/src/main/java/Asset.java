@@ -0,0 +1,50 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+/**
+ * Client-side representation of an asset returned by the basic smart contract.
+ */
+public final class Asset {
+	private final String id;
+	private final String color;
+	private final int size;
+	private final String owner;
+	private final int appraisedValue;
+
+	public Asset(final String id, final String color, final int size, final String owner, final int appraisedValue) {
+		this.id = id;
+		this.color = color;
+		this.size = size;
+		this.owner = owner;
+		this.appraisedValue = appraisedValue;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getColor() {
+		return color;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public int getAppraisedValue() {
+		return appraisedValue;
+	}
+
+	@Override
+	public String toString() {
+		return "Asset [id=" + id + ", color=" + color + ", size=" + size + ", owner=" + owner
+				+ ", appraisedValue=" + appraisedValue + "]";
+	}
+}
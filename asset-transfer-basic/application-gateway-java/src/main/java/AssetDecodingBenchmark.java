@@ -0,0 +1,87 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+/**
+ * Compares decoding a large {@code GetAllAssets} result by parsing it into a JSON tree and pretty printing it, as App
+ * used to, against streaming it through {@link AssetReader}. Reports elapsed time and bytes allocated by each approach.
+ * Run with {@code ./gradlew assetDecodingBenchmark}, optionally passing the result size in megabytes with
+ * {@code --args}.
+ */
+public final class AssetDecodingBenchmark {
+	private static final int DEFAULT_SIZE_MB = 100;
+	private static final int RUNS = 3;
+
+	private AssetDecodingBenchmark() {
+		// Private constructor to prevent instantiation
+	}
+
+	public static void main(final String[] args) {
+		int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE_MB;
+		byte[] json = generateAssets(sizeMb * 1024L * 1024L);
+		System.out.printf("Result size: %d bytes%n", json.length);
+
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		for (int run = 1; run <= RUNS; run++) {
+			measure("tree", () -> {
+				JsonElement tree = JsonParser.parseString(new String(json, StandardCharsets.UTF_8));
+				return gson.toJson(tree).length();
+			});
+			measure("streaming", () -> {
+				long count = 0;
+				try (AssetReader assets = new AssetReader(json)) {
+					while (assets.hasNext()) {
+						count += assets.next().getSize();
+					}
+				}
+				return count;
+			});
+		}
+	}
+
+	private static byte[] generateAssets(final long targetBytes) {
+		StringBuilder json = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, targetBytes + 1024));
+		json.append('[');
+		for (long i = 0; json.length() < targetBytes; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"AppraisedValue\":").append(300 + i % 1000)
+					.append(",\"Color\":\"").append(i % 2 == 0 ? "blue" : "yellow")
+					.append("\",\"ID\":\"asset").append(i)
+					.append("\",\"Owner\":\"owner").append(i % 5000)
+					.append("\",\"Size\":").append(i % 20)
+					.append('}');
+		}
+		json.append(']');
+		return json.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void measure(final String name, final Decoder decoder) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		long result = decoder.decode();
+		long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+		long allocatedMb = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / (1024 * 1024);
+
+		System.out.printf("%-9s: %6d ms, %7d MB allocated (result %d)%n", name, elapsedMillis, allocatedMb, result);
+	}
+
+	@FunctionalInterface
+	private interface Decoder {
+		long decode();
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures asset IDs generated per second by a shared {@link AssetIdGenerator} as the number of threads grows, up to
+ * the number of available cores, and checks that no ID was generated twice. Run with
+ * {@code ./gradlew assetIdBenchmark}, adding {@code --args=2} to measure IDs with two hash prefix digits.
+ */
+public final class AssetIdBenchmark {
+	private static final int IDS_PER_THREAD = 1_000_000;
+	private static final int WARMUP_ROUNDS = 2;
+
+	private AssetIdBenchmark() {
+		// Private constructor to prevent instantiation
+	}
+
+	public static void main(final String[] args) throws Exception {
+		int hashDigits = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+		AssetIdGenerator generator = new AssetIdGenerator(1, hashDigits);
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			run(generator, new long[1][IDS_PER_THREAD]);
+		}
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println("threads, IDs/second, duplicates, example");
+		for (int threads = 1; threads <= cores; threads = nextThreadCount(threads, cores)) {
+			long[][] ids = new long[threads][IDS_PER_THREAD];
+
+			long start = System.nanoTime();
+			run(generator, ids);
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.printf("%d, %.0f, %d, %s%n", threads, threads * IDS_PER_THREAD / seconds, countDuplicates(ids),
+					generator.format(ids[0][0]));
+		}
+	}
+
+	/**
+	 * Generate and format IDs on one thread per row of the array, keeping the numeric IDs for the duplicate check.
+	 */
+	private static void run(final AssetIdGenerator generator, final long[][] ids) throws InterruptedException {
+		AtomicLong formattedChars = new AtomicLong();
+		Thread[] workers = new Thread[ids.length];
+
+		for (int t = 0; t < ids.length; t++) {
+			long[] threadIds = ids[t];
+			workers[t] = new Thread(() -> {
+				long chars = 0;
+				for (int i = 0; i < threadIds.length; i++) {
+					threadIds[i] = generator.nextId();
+					chars += generator.format(threadIds[i]).length();
+				}
+				formattedChars.addAndGet(chars);
+			});
+		}
+
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		if (formattedChars.get() == 0) {
+			throw new IllegalStateException("No IDs generated");
+		}
+	}
+
+	private static long countDuplicates(final long[][] ids) {
+		long[] all = Arrays.stream(ids).flatMapToLong(Arrays::stream).sorted().toArray();
+
+		long duplicates = 0;
+		for (int i = 1; i < all.length; i++) {
+			if (all[i] == all[i - 1]) {
+				duplicates++;
+			}
+		}
+		return duplicates;
+	}
+
+	private static int nextThreadCount(final int threads, final int cores) {
+		return threads < cores && threads * 2 > cores ? cores : threads * 2;
+	}
+}
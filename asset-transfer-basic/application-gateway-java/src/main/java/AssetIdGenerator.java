@@ -0,0 +1,119 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates unique asset IDs from a millisecond timestamp, a node ID and a per-millisecond sequence number, in the
+ * style of Snowflake IDs. IDs from one generator never repeat, and generators with different node IDs never produce
+ * the same ID, so each concurrently running client process must be given its own node ID.
+ * <p>
+ * The timestamp and sequence number are held in a single atomic value and advanced with compare-and-set, so ID
+ * generation never blocks. If more than 4096 IDs are requested within a millisecond, or the system clock moves
+ * backwards, the timestamp is advanced past the clock rather than waiting for it to catch up.
+ * <p>
+ * IDs are formatted as the "asset" prefix followed by the ID as a fixed-width decimal number, so that they sort in
+ * the order they were generated. That places all new keys at one end of the key space. When hash prefix digits are
+ * requested, decimal digits derived from a hash of the ID are inserted after the "asset" prefix instead, which
+ * spreads new keys evenly across key ranges such as those used by {@link BulkExport}.
+ */
+public final class AssetIdGenerator {
+	public static final int MAX_NODE_ID = (1 << 10) - 1;
+
+	private static final String PREFIX = "asset";
+	private static final long EPOCH_MILLIS = 1577836800000L; // 2020-01-01T00:00:00Z
+	private static final int SEQUENCE_BITS = 12;
+	private static final int NODE_BITS = 10;
+	private static final int ID_DIGITS = 19;
+
+	private final long nodeBits;
+	private final int hashDigits;
+	private final int hashModulus;
+	private final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+	public AssetIdGenerator(final int nodeId) {
+		this(nodeId, 0);
+	}
+
+	/**
+	 * @param nodeId Node ID between 0 and {@link #MAX_NODE_ID}, unique to this client.
+	 * @param hashDigits Number of hash prefix digits, up to 4, or 0 for time-ordered IDs.
+	 */
+	public AssetIdGenerator(final int nodeId, final int hashDigits) {
+		if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+			throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+		}
+		if (hashDigits < 0 || hashDigits > 4) {
+			throw new IllegalArgumentException("Hash prefix digits must be between 0 and 4: " + hashDigits);
+		}
+
+		this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+		this.hashDigits = hashDigits;
+		this.hashModulus = (int) Math.pow(10, hashDigits);
+	}
+
+	/**
+	 * Generate the next numeric ID, made up of 41 bits of timestamp, 10 bits of node ID and 12 bits of sequence
+	 * number.
+	 */
+	public long nextId() {
+		long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+
+		long last;
+		long next;
+		do {
+			last = lastTimeAndSequence.get();
+			// Within the same millisecond, or if the clock has gone backwards, increment the sequence number. An
+			// overflowing sequence number carries into the timestamp.
+			next = now > last ? now : last + 1;
+		} while (!lastTimeAndSequence.compareAndSet(last, next));
+
+		long timestamp = next >>> SEQUENCE_BITS;
+		long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+		return timestamp << (NODE_BITS + SEQUENCE_BITS) | nodeBits | sequence;
+	}
+
+	/**
+	 * Generate the next asset ID.
+	 */
+	public String nextAssetId() {
+		return format(nextId());
+	}
+
+	/**
+	 * Format a numeric ID as an asset ID. The result only depends on the ID and this generator's hash prefix digits.
+	 */
+	public String format(final long id) {
+		char[] chars = new char[PREFIX.length() + hashDigits + ID_DIGITS];
+		PREFIX.getChars(0, PREFIX.length(), chars, 0);
+
+		int end = chars.length;
+		writeDigits(chars, end - ID_DIGITS, end, id);
+		if (hashDigits > 0) {
+			writeDigits(chars, PREFIX.length(), PREFIX.length() + hashDigits, Math.floorMod(mix(id), hashModulus));
+		}
+
+		return new String(chars);
+	}
+
+	private static void writeDigits(final char[] chars, final int start, final int end, final long value) {
+		long remaining = value;
+		for (int i = end - 1; i >= start; i--) {
+			chars[i] = (char) ('0' + remaining % 10);
+			remaining /= 10;
+		}
+	}
+
+	private static long mix(final long id) {
+		long hash = id;
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.protos.common.Block;
+import org.hyperledger.fabric.protos.common.BlockMetadataIndex;
+import org.hyperledger.fabric.protos.common.ChannelHeader;
+import org.hyperledger.fabric.protos.common.Envelope;
+import org.hyperledger.fabric.protos.common.HeaderType;
+import org.hyperledger.fabric.protos.common.Payload;
+import org.hyperledger.fabric.protos.ledger.rwset.NsReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.TxReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KVRWSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KVWrite;
+import org.hyperledger.fabric.protos.peer.ChaincodeAction;
+import org.hyperledger.fabric.protos.peer.ChaincodeActionPayload;
+import org.hyperledger.fabric.protos.peer.ProposalResponsePayload;
+import org.hyperledger.fabric.protos.peer.Transaction;
+import org.hyperledger.fabric.protos.peer.TransactionAction;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+
+/**
+ * Local record of which asset keys exist in the world state of a chaincode, kept up to date from block events. The
+ * basic smart contract emits no chaincode events, so the writes made by each valid transaction are read from the
+ * read-write sets in full blocks.
+ * <p>
+ * Lookups first consult a Bloom filter, which answers most queries for absent keys without touching the exact set of
+ * keys. Keys that the filter reports as present are confirmed against the exact set, and those that turn out to be
+ * absent are counted as filter false positives. The filter cannot remove deleted keys, so it is rebuilt from the exact
+ * set once enough keys have been deleted, or once it holds more keys than it was sized for.
+ * <p>
+ * The index reflects the ledger as of the last block received, so it can briefly lag behind transactions committed by
+ * other clients.
+ */
+public final class AssetKeyIndex implements AutoCloseable {
+	private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+	private final Network network;
+	private final String chaincodeName;
+	private final double falsePositiveProbability;
+	private final Set<String> keys = ConcurrentHashMap.newKeySet();
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder filterNegatives = new LongAdder();
+	private final LongAdder filterFalsePositives = new LongAdder();
+	private volatile BloomFilter filter;
+	private volatile CloseableIterator<Block> blocks;
+	private volatile boolean closed = false;
+	private volatile long nextBlockNumber = -1;
+	private long filterCapacity;
+	private long removedSinceRebuild = 0;
+
+	/**
+	 * Create an index for the keys of a chaincode deployed to the given network. Call {@link #load(Contract)} to
+	 * populate the index and begin following block events.
+	 */
+	public AssetKeyIndex(final Network network, final String chaincodeName, final long expectedKeys,
+			final double falsePositiveProbability) {
+		this.network = network;
+		this.chaincodeName = chaincodeName;
+		this.falsePositiveProbability = falsePositiveProbability;
+		this.filterCapacity = Math.max(1, expectedKeys);
+		this.filter = new BloomFilter(filterCapacity, falsePositiveProbability);
+	}
+
+	/**
+	 * Seed the index with the keys returned by the contract's GetAllAssets function, then apply block events from
+	 * the point at which the seed was taken. The block event stream is opened before the query so that no update
+	 * committed while the query runs is missed; blocks that were already reflected in the query result are harmless
+	 * to apply again.
+	 */
+	public void load(final Contract contract) throws GatewayException {
+		blocks = network.getBlockEvents();
+
+		byte[] result = contract.evaluateTransaction("GetAllAssets");
+		synchronized (this) {
+			try (AssetReader assets = new AssetReader(result)) {
+				assets.forEachRemaining(asset -> addKey(asset.getId()));
+			}
+		}
+
+		executor.execute(this::receiveBlocks);
+	}
+
+	/**
+	 * Whether the key existed as of the last block received.
+	 */
+	public boolean exists(final String key) {
+		lookups.increment();
+		if (!filter.mightContain(key)) {
+			filterNegatives.increment();
+			return false;
+		}
+
+		if (keys.contains(key)) {
+			return true;
+		}
+
+		filterFalsePositives.increment();
+		return false;
+	}
+
+	/**
+	 * Apply a write made by a transaction known to have committed in the given block, without waiting for the block
+	 * event. The write is ignored if that block has already been received, since later blocks may have changed the
+	 * key again.
+	 */
+	public synchronized void applyCommitted(final String key, final boolean deleted, final long blockNumber) {
+		if (blockNumber < nextBlockNumber) {
+			return;
+		}
+		applyWrite(key, deleted);
+	}
+
+	public int size() {
+		return keys.size();
+	}
+
+	/**
+	 * Number of the next block expected from the event stream, or -1 if no block has been received yet.
+	 */
+	public long getNextBlockNumber() {
+		return nextBlockNumber;
+	}
+
+	/**
+	 * Proportion of lookups for absent keys that the Bloom filter wrongly reported as present.
+	 */
+	public double getFalsePositiveRate() {
+		long falsePositives = filterFalsePositives.sum();
+		long absent = filterNegatives.sum() + falsePositives;
+		return absent > 0 ? (double) falsePositives / absent : 0;
+	}
+
+	public String summary() {
+		return String.format("Keys: %d, next block: %d%n", keys.size(), nextBlockNumber)
+				+ String.format("Lookups: %d, answered by filter: %d, filter false positives: %d (%.3f%%, expected %.3f%%)%n",
+						lookups.sum(), filterNegatives.sum(), filterFalsePositives.sum(),
+						getFalsePositiveRate() * 100, filter.getExpectedFalsePositiveRate() * 100);
+	}
+
+	private void receiveBlocks() {
+		while (!closed) {
+			try {
+				blocks.forEachRemaining(this::onBlock);
+			} catch (GatewayRuntimeException e) {
+				if (closed) {
+					return;
+				}
+				System.err.println("Block event stream failed, reconnecting: " + e);
+			}
+
+			if (!closed) {
+				reconnect();
+			}
+		}
+	}
+
+	private void reconnect() {
+		try {
+			Thread.sleep(RECONNECT_DELAY_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		// Resume after the last block received so that no writes are missed while disconnected.
+		blocks = nextBlockNumber < 0
+				? network.getBlockEvents()
+				: network.newBlockEventsRequest().startBlock(nextBlockNumber).build().getEvents();
+	}
+
+	private synchronized void onBlock(final Block block) {
+		ByteString validationCodes = block.getMetadata().getMetadata(BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE);
+
+		for (int i = 0; i < block.getData().getDataCount(); i++) {
+			if (i < validationCodes.size() && validationCodes.byteAt(i) != TxValidationCode.VALID_VALUE) {
+				continue;
+			}
+
+			try {
+				applyTransaction(block.getData().getData(i));
+			} catch (InvalidProtocolBufferException e) {
+				System.err.println("Skipping unreadable transaction " + i + " in block "
+						+ block.getHeader().getNumber() + ": " + e);
+			}
+		}
+
+		nextBlockNumber = block.getHeader().getNumber() + 1;
+	}
+
+	private void applyTransaction(final ByteString envelopeBytes) throws InvalidProtocolBufferException {
+		Payload payload = Payload.parseFrom(Envelope.parseFrom(envelopeBytes).getPayload());
+		ChannelHeader channelHeader = ChannelHeader.parseFrom(payload.getHeader().getChannelHeader());
+		if (channelHeader.getType() != HeaderType.ENDORSER_TRANSACTION_VALUE) {
+			return;
+		}
+
+		Transaction transaction = Transaction.parseFrom(payload.getData());
+		for (TransactionAction action : transaction.getActionsList()) {
+			ChaincodeActionPayload actionPayload = ChaincodeActionPayload.parseFrom(action.getPayload());
+			ProposalResponsePayload responsePayload = ProposalResponsePayload.parseFrom(
+					actionPayload.getAction().getProposalResponsePayload());
+			ChaincodeAction chaincodeAction = ChaincodeAction.parseFrom(responsePayload.getExtension());
+			TxReadWriteSet readWriteSet = TxReadWriteSet.parseFrom(chaincodeAction.getResults());
+
+			for (NsReadWriteSet namespace : readWriteSet.getNsRwsetList()) {
+				if (!namespace.getNamespace().equals(chaincodeName)) {
+					continue;
+				}
+
+				for (KVWrite write : KVRWSet.parseFrom(namespace.getRwset()).getWritesList()) {
+					// Composite keys begin with a null character and are not asset IDs.
+					if (!write.getKey().startsWith("\u0000")) {
+						applyWrite(write.getKey(), write.getIsDelete());
+					}
+				}
+			}
+		}
+	}
+
+	private void applyWrite(final String key, final boolean deleted) {
+		if (!deleted) {
+			addKey(key);
+		} else if (keys.remove(key) && ++removedSinceRebuild > filterCapacity / 4) {
+			rebuildFilter();
+		}
+	}
+
+	private void addKey(final String key) {
+		// Add to the filter first so that a concurrent lookup never finds the key missing from the filter but present
+		// in the exact set.
+		filter.add(key);
+		if (keys.add(key) && keys.size() > filterCapacity) {
+			rebuildFilter();
+		}
+	}
+
+	private void rebuildFilter() {
+		filterCapacity = Math.max(filterCapacity, keys.size() * 2L);
+		BloomFilter rebuilt = new BloomFilter(filterCapacity, falsePositiveProbability);
+		keys.forEach(rebuilt::add);
+
+		filter = rebuilt;
+		removedSinceRebuild = 0;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		if (blocks != null) {
+			blocks.close();
+		}
+		executor.shutdownNow();
+
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
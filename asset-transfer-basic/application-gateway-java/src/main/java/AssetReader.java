@@ -0,0 +1,154 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Decodes a JSON array of assets, such as the result of the {@code GetAllAssets} transaction function, one asset at a
+ * time. Only the current asset is held in memory, rather than a parsed tree of the whole result.
+ * <p>
+ * Both the capitalized property names used by the Go and JavaScript smart contracts and the camel case names used by
+ * the Java smart contract are understood. Numeric values may be either JSON numbers or strings. Unknown properties are
+ * skipped.
+ */
+public final class AssetReader implements Iterator<Asset>, AutoCloseable {
+	private final JsonReader reader;
+	private boolean started = false;
+	private boolean finished = false;
+
+	public AssetReader(final byte[] json) {
+		this(json.length == 0
+				? new StringReader("[]")
+				: new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+	}
+
+	public AssetReader(final Reader json) {
+		reader = new JsonReader(json);
+	}
+
+	@Override
+	public boolean hasNext() {
+		try {
+			if (!started) {
+				start();
+			}
+			if (finished) {
+				return false;
+			}
+			if (reader.hasNext()) {
+				return true;
+			}
+
+			reader.endArray();
+			finished = true;
+			return false;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void start() throws IOException {
+		started = true;
+
+		// A smart contract with no assets may return null instead of an empty array
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			finished = true;
+		} else {
+			reader.beginArray();
+		}
+	}
+
+	@Override
+	public Asset next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		try {
+			return readAsset(reader);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Decode a single asset JSON object, such as one line of a newline-delimited JSON file.
+	 */
+	public static Asset parseAsset(final String json) {
+		try (JsonReader reader = new JsonReader(new StringReader(json))) {
+			return readAsset(reader);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Asset readAsset(final JsonReader reader) throws IOException {
+		String id = null;
+		String color = null;
+		int size = 0;
+		String owner = null;
+		int appraisedValue = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				continue;
+			}
+
+			switch (name) {
+			case "ID":
+			case "assetID":
+				id = reader.nextString();
+				break;
+			case "Color":
+			case "color":
+				color = reader.nextString();
+				break;
+			case "Size":
+			case "size":
+				size = reader.nextInt();
+				break;
+			case "Owner":
+			case "owner":
+				owner = reader.nextString();
+				break;
+			case "AppraisedValue":
+			case "appraisedValue":
+				appraisedValue = reader.nextInt();
+				break;
+			default:
+				reader.skipValue();
+				break;
+			}
+		}
+		reader.endObject();
+
+		return new Asset(id, color, size, owner, appraisedValue);
+	}
+
+	@Override
+	public void close() {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of strings, sized for an expected number of entries and false-positive probability. Entries can be
+ * added concurrently with lookups; entries cannot be removed.
+ * <p>
+ * The bit positions for each entry are derived from the two halves of a single 64-bit hash, which performs as well as
+ * independent hash functions for a filter of this kind.
+ */
+public final class BloomFilter {
+	private final AtomicLongArray words;
+	private final long bitCount;
+	private final int hashCount;
+
+	public BloomFilter(final long expectedEntries, final double falsePositiveProbability) {
+		long entries = Math.max(1, expectedEntries);
+		long bits = (long) Math.ceil(-entries * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+		int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+
+		this.words = new AtomicLongArray(wordCount);
+		this.bitCount = wordCount * 64L;
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / entries * Math.log(2)));
+	}
+
+	public void add(final String entry) {
+		long hash = hash(entry);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+
+		for (int i = 1; i <= hashCount; i++) {
+			long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+			int index = (int) (bit >>> 6);
+			long mask = 1L << bit;
+
+			long word = words.get(index);
+			while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+				word = words.get(index);
+			}
+		}
+	}
+
+	/**
+	 * Returns {@code false} if the entry has definitely not been added, or {@code true} if it probably has.
+	 */
+	public boolean mightContain(final String entry) {
+		long hash = hash(entry);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+
+		for (int i = 1; i <= hashCount; i++) {
+			long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+			if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * False-positive probability expected from the proportion of bits currently set.
+	 */
+	public double getExpectedFalsePositiveRate() {
+		long setBits = 0;
+		for (int i = 0; i < words.length(); i++) {
+			setBits += Long.bitCount(words.get(i));
+		}
+		return Math.pow((double) setBits / bitCount, hashCount);
+	}
+
+	private static long hash(final String entry) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : entry.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
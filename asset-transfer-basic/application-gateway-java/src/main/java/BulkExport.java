@@ -0,0 +1,404 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import io.grpc.ManagedChannel;
+import org.hyperledger.fabric.client.CallOption;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
+
+/**
+ * Exports all assets in world state to newline-delimited JSON files.
+ * <p>
+ * The key space is split into lexical partitions, each exported concurrently by paginated range queries to its own
+ * part file. Partition boundaries divide the characters following a common key prefix, such as the digits following
+ * "asset" in the sample asset IDs. The first partition starts at the beginning of the key space and the last runs to
+ * its end, so keys outside the prefix are also exported. Because partitions are ordered and each is read in key
+ * order, the part files are then concatenated to give a single output ordered by key. A manifest records the key
+ * range, record count, size and SHA-256 checksum of each part file and of the merged output.
+ * <p>
+ * A paginated range query transaction function is required. The basic smart contract does not have one, so the
+ * default is the {@code GetAssetsByRangeWithPagination} function of the ledger queries sample smart contract. Its Go
+ * implementation returns a JSON array of assets, and pages are continued from the last key received. Its JavaScript
+ * implementation returns an object holding the key and record of each result, along with a bookmark from which the
+ * next page is read. Any other reply fails the export.
+ * <p>
+ * Usage: {@code ./gradlew bulkExport --args="<output directory> [partitions] [gzip]"}
+ */
+public final class BulkExport {
+	private static final String channelName = "mychannel";
+	private static final String chaincodeName = "ledger";
+	private static final String rangeFunction = "GetAssetsByRangeWithPagination";
+
+	private static final String DEFAULT_KEY_PREFIX = "asset";
+	private static final String DEFAULT_ALPHABET = "0123456789";
+	private static final int DEFAULT_PARTITIONS = 8;
+	private static final int PAGE_SIZE = 1000;
+
+	private final List<Contract> contracts;
+	private final Path outputDir;
+	private final List<KeyRange> partitions;
+	private final boolean compress;
+	private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: BulkExport <output directory> [partitions] [gzip]");
+			System.exit(1);
+		}
+
+		Path outputDir = Paths.get(args[0]);
+		int partitionCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PARTITIONS;
+		boolean compress = args.length > 2 && args[2].equalsIgnoreCase("gzip");
+
+		ManagedChannel channel = Connections.newGrpcConnection();
+		Gateway.Builder builder = Gateway.newInstance()
+				.identity(Connections.newIdentity())
+				.signer(Connections.newSigner())
+				.connection(channel)
+				.evaluateOptions(CallOption.deadlineAfter(30, TimeUnit.SECONDS));
+
+		try (Gateway gateway = builder.connect()) {
+			Contract contract = gateway.getNetwork(channelName).getContract(chaincodeName);
+			List<KeyRange> partitions = KeyRange.partition(DEFAULT_KEY_PREFIX, DEFAULT_ALPHABET, partitionCount);
+			new BulkExport(List.of(contract), outputDir, partitions, compress).run();
+		} finally {
+			channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * @param contracts Contracts to spread range queries across, ideally from Gateway connections to different peers.
+	 */
+	public BulkExport(final List<Contract> contracts, final Path outputDir, final List<KeyRange> partitions,
+			final boolean compress) {
+		this.contracts = List.copyOf(contracts);
+		this.outputDir = outputDir;
+		this.partitions = List.copyOf(partitions);
+		this.compress = compress;
+	}
+
+	public void run() throws IOException {
+		Files.createDirectories(outputDir);
+		long start = System.nanoTime();
+
+		ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+		List<CompletableFuture<FileSummary>> parts = new ArrayList<>(partitions.size());
+		try {
+			for (int i = 0; i < partitions.size(); i++) {
+				Contract contract = contracts.get(i % contracts.size());
+				KeyRange range = partitions.get(i);
+				Path partPath = outputDir.resolve(String.format("part-%05d%s", i, extension()));
+				parts.add(CompletableFuture.supplyAsync(() -> exportPartition(contract, range, partPath), executor));
+			}
+
+			List<FileSummary> partSummaries = new ArrayList<>(parts.size());
+			for (CompletableFuture<FileSummary> part : parts) {
+				partSummaries.add(part.join());
+			}
+
+			FileSummary merged = merge(partSummaries, outputDir.resolve("assets" + extension()));
+			writeManifest(partSummaries, merged);
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("*** Exported %d assets to %s in %.1fs (%.0f records/s)%n",
+					merged.records, merged.path, seconds, merged.records / seconds);
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			}
+			throw e;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private String extension() {
+		return compress ? ".ndjson.gz" : ".ndjson";
+	}
+
+	private FileSummary exportPartition(final Contract contract, final KeyRange range, final Path partPath) {
+		FileSummary summary = new FileSummary(partPath, range);
+		MessageDigest digest = sha256();
+
+		try (DigestOutputStream digestOut = new DigestOutputStream(Files.newOutputStream(partPath), digest);
+				Writer out = new BufferedWriter(new OutputStreamWriter(compressed(digestOut), StandardCharsets.UTF_8))) {
+			String pageStart = range.startKey;
+			String bookmark = "";
+			while (true) {
+				byte[] reply = contract.evaluateTransaction(rangeFunction, pageStart, range.endKey,
+						Integer.toString(PAGE_SIZE), bookmark);
+				Page page = writePage(reply, out);
+				summary.records += page.count;
+
+				if (page.count < PAGE_SIZE) {
+					break;
+				}
+				if (page.bookmark != null) {
+					if (page.bookmark.isEmpty()) {
+						break;
+					}
+					bookmark = page.bookmark;
+				} else {
+					// Range start keys are inclusive, so resume at the smallest key after the last one received.
+					pageStart = page.lastKey + '\u0000';
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (GatewayException e) {
+			throw new CompletionException(e);
+		}
+
+		try {
+			summary.complete(digest);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		System.out.printf("*** Partition [%s, %s): %d assets%n", range.startKey, range.endKey, summary.records);
+		return summary;
+	}
+
+	/**
+	 * Write the records in a page of range query results, in either of the reply forms described for the class.
+	 */
+	private static Page writePage(final byte[] reply, final Writer out) throws IOException {
+		Page page = new Page();
+		if (reply.length == 0) {
+			// An empty result from the Go smart contract
+			return page;
+		}
+
+		try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(reply),
+				StandardCharsets.UTF_8))) {
+			JsonToken token = reader.peek();
+			if (token == JsonToken.NULL) {
+				return page;
+			}
+			if (token == JsonToken.BEGIN_ARRAY) {
+				writeRecords(reader, out, page, false);
+				return page;
+			}
+			if (token != JsonToken.BEGIN_OBJECT) {
+				throw new IllegalStateException("Unexpected " + rangeFunction + " reply: " + token);
+			}
+
+			boolean hasResults = false;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+				case "results":
+					writeRecords(reader, out, page, true);
+					hasResults = true;
+					break;
+				case "ResponseMetadata":
+					page.bookmark = bookmarkOf(JsonParser.parseReader(reader));
+					break;
+				default:
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+
+			if (!hasResults || page.bookmark == null) {
+				throw new IllegalStateException("Unexpected " + rangeFunction
+						+ " reply: object without results and ResponseMetadata.Bookmark");
+			}
+		}
+
+		return page;
+	}
+
+	private static void writeRecords(final JsonReader reader, final Writer out, final Page page, final boolean keyed)
+			throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			JsonElement result = JsonParser.parseReader(reader);
+			JsonElement record = keyed ? field(result, "Record") : result;
+			out.write(record.toString());
+			out.write('\n');
+			page.lastKey = keyed ? field(result, "Key").getAsString() : keyOf(record);
+			page.count++;
+		}
+		reader.endArray();
+	}
+
+	private static String bookmarkOf(final JsonElement metadata) {
+		JsonElement bookmark = field(metadata, "Bookmark");
+		return bookmark.isJsonNull() ? "" : bookmark.getAsString();
+	}
+
+	private static JsonElement field(final JsonElement object, final String name) {
+		JsonElement value = object.isJsonObject() ? object.getAsJsonObject().get(name) : null;
+		if (value == null) {
+			throw new IllegalStateException("Unexpected " + rangeFunction + " reply: no " + name + " in " + object);
+		}
+		return value;
+	}
+
+	private static String keyOf(final JsonElement record) {
+		JsonObject asset = record.getAsJsonObject();
+		JsonElement id = asset.has("ID") ? asset.get("ID") : asset.get("assetID");
+		if (id == null) {
+			throw new IllegalStateException("Record has no ID: " + record);
+		}
+		return id.getAsString();
+	}
+
+	private OutputStream compressed(final OutputStream out) throws IOException {
+		return compress ? new GZIPOutputStream(out, 64 * 1024) : out;
+	}
+
+	/**
+	 * Concatenate part files in partition order. Concatenated gzip members are themselves a valid gzip file, so
+	 * compressed parts are also copied without decompressing them.
+	 */
+	private FileSummary merge(final List<FileSummary> parts, final Path mergedPath) throws IOException {
+		FileSummary merged = new FileSummary(mergedPath, null);
+		MessageDigest digest = sha256();
+
+		try (DigestOutputStream out = new DigestOutputStream(Files.newOutputStream(mergedPath), digest)) {
+			for (FileSummary part : parts) {
+				try (InputStream in = Files.newInputStream(part.path)) {
+					in.transferTo(out);
+				}
+				merged.records += part.records;
+			}
+		}
+
+		merged.complete(digest);
+		return merged;
+	}
+
+	private void writeManifest(final List<FileSummary> parts, final FileSummary merged) throws IOException {
+		JsonObject manifest = new JsonObject();
+		manifest.add("output", merged.toJson());
+		JsonArray partList = new JsonArray();
+		parts.forEach(part -> partList.add(part.toJson()));
+		manifest.add("parts", partList);
+
+		Files.writeString(outputDir.resolve("manifest.json"), gson.toJson(manifest));
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * A half-open range of keys. Empty start and end keys denote the beginning and end of the key space.
+	 */
+	public static final class KeyRange {
+		private final String startKey;
+		private final String endKey;
+
+		public KeyRange(final String startKey, final String endKey) {
+			this.startKey = startKey;
+			this.endKey = endKey;
+		}
+
+		/**
+		 * Split the whole key space into partitions whose boundaries are the given prefix followed by evenly spaced
+		 * characters from the alphabet.
+		 */
+		public static List<KeyRange> partition(final String prefix, final String alphabet, final int count) {
+			int partitionCount = Math.max(1, Math.min(count, alphabet.length()));
+			List<KeyRange> ranges = new ArrayList<>(partitionCount);
+
+			String start = "";
+			for (int i = 1; i < partitionCount; i++) {
+				String boundary = prefix + alphabet.charAt(i * alphabet.length() / partitionCount);
+				ranges.add(new KeyRange(start, boundary));
+				start = boundary;
+			}
+			ranges.add(new KeyRange(start, ""));
+
+			return ranges;
+		}
+	}
+
+	private static final class Page {
+		private int count = 0;
+		private String lastKey;
+		// Bookmark from which to read the next page, or null if the reply did not include one.
+		private String bookmark;
+	}
+
+	private static final class FileSummary {
+		private final Path path;
+		private final KeyRange range;
+		private long records = 0;
+		private long bytes;
+		private String sha256;
+
+		FileSummary(final Path path, final KeyRange range) {
+			this.path = path;
+			this.range = range;
+		}
+
+		void complete(final MessageDigest digest) throws IOException {
+			bytes = Files.size(path);
+			sha256 = toHex(digest.digest());
+		}
+
+		JsonObject toJson() {
+			JsonObject json = new JsonObject();
+			json.addProperty("file", path.getFileName().toString());
+			if (range != null) {
+				json.addProperty("startKey", range.startKey);
+				json.addProperty("endKey", range.endKey);
+			}
+			json.addProperty("records", records);
+			json.addProperty("bytes", bytes);
+			json.addProperty("sha256", sha256);
+			return json;
+		}
+
+		private static String toHex(final byte[] bytes) {
+			StringBuilder hex = new StringBuilder(bytes.length * 2);
+			for (byte b : bytes) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		}
+	}
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.grpc.ManagedChannel;
+import org.hyperledger.fabric.client.CallOption;
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
+
+/**
+ * Imports assets into the basic smart contract from a newline-delimited JSON or CSV file.
+ * <p>
+ * The input file is memory-mapped a region at a time, and each region parsed in parallel chunks split on line
+ * boundaries. Records are grouped into batches and submitted as CreateAsset transactions, with a bounded number of
+ * transactions in flight. A failed transaction is retried with backoff. Once every transaction in a batch, and in all
+ * batches before it, has succeeded, the file offset following the batch is saved to a checkpoint file. A batch with
+ * records that still failed after retrying holds the checkpoint at the batch before it, and the import exits with a
+ * non-zero status once the remaining records have been attempted. A restarted import resumes from the checkpoint;
+ * assets that already exist on the ledger are skipped.
+ * <p>
+ * CSV files have the columns ID, Color, Size, Owner and AppraisedValue, without quoting. A header line is skipped.
+ * Malformed lines are reported and skipped.
+ * <p>
+ * Usage: {@code ./gradlew bulkImport --args="<input file> [batch size] [max in flight]"}
+ */
+public final class BulkImport {
+	private static final String channelName = "mychannel";
+	private static final String chaincodeName = "basic";
+
+	private static final long REGION_SIZE = 64L * 1024 * 1024;
+	private static final int DEFAULT_BATCH_SIZE = 100;
+	private static final int DEFAULT_MAX_IN_FLIGHT = 200;
+	private static final long REPORT_INTERVAL_SECONDS = 5;
+	private static final RetryPolicy RETRY_POLICY = new RetryPolicy(3, Duration.ofMillis(500), Duration.ofSeconds(5));
+
+	private final Contract contract;
+	private final Path inputPath;
+	private final Path checkpointPath;
+	private final boolean csv;
+	private final int batchSize;
+	private final int maxInFlight;
+	private final Semaphore inFlight;
+	private final ExecutorService submitters;
+	private final ExecutorService parsers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	private final LongAdder imported = new LongAdder();
+	private final LongAdder existing = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder malformed = new LongAdder();
+	private final Map<Long, Long> completedBatches = new TreeMap<>();
+	private long nextBatch = 0;
+	private long nextCheckpointBatch = 0;
+	private Long firstFailedBatch = null;
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: BulkImport <input file> [batch size] [max in flight]");
+			System.exit(1);
+		}
+
+		Path inputPath = Paths.get(args[0]);
+		int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BATCH_SIZE;
+		int maxInFlight = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_IN_FLIGHT;
+
+		ManagedChannel channel = Connections.newGrpcConnection();
+		Gateway.Builder builder = Gateway.newInstance()
+				.identity(Connections.newIdentity())
+				.signer(Connections.newSigner())
+				.connection(channel)
+				.evaluateOptions(CallOption.deadlineAfter(5, TimeUnit.SECONDS))
+				.endorseOptions(CallOption.deadlineAfter(15, TimeUnit.SECONDS))
+				.submitOptions(CallOption.deadlineAfter(5, TimeUnit.SECONDS))
+				.commitStatusOptions(CallOption.deadlineAfter(1, TimeUnit.MINUTES));
+
+		boolean complete;
+		try (Gateway gateway = builder.connect()) {
+			Contract contract = gateway.getNetwork(channelName).getContract(chaincodeName);
+			complete = new BulkImport(contract, inputPath, batchSize, maxInFlight).run();
+		} finally {
+			channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+		}
+
+		if (!complete) {
+			System.exit(1);
+		}
+	}
+
+	public BulkImport(final Contract contract, final Path inputPath, final int batchSize, final int maxInFlight) {
+		this.contract = contract;
+		this.inputPath = inputPath;
+		this.checkpointPath = Paths.get(inputPath + ".checkpoint");
+		this.csv = inputPath.getFileName().toString().toLowerCase().endsWith(".csv");
+		this.batchSize = batchSize;
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.submitters = Executors.newFixedThreadPool(maxInFlight);
+	}
+
+	/**
+	 * Import all records following the checkpoint.
+	 * @return true if every record was imported or already existed; false if some failed and the import must be rerun.
+	 */
+	public boolean run() throws IOException, InterruptedException, ExecutionException {
+		long offset = readCheckpoint();
+		if (offset > 0) {
+			System.out.println("*** Resuming import of " + inputPath + " from offset " + offset);
+		}
+
+		long start = System.nanoTime();
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+		reporter.scheduleAtFixedRate(new ProgressReport(start), REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS,
+				TimeUnit.SECONDS);
+
+		try (FileChannel channel = FileChannel.open(inputPath, StandardOpenOption.READ)) {
+			long size = channel.size();
+			while (offset < size) {
+				long length = Math.min(REGION_SIZE, size - offset);
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+
+				// Only process whole lines; a partial line at the end of the region is read again with the next one.
+				int usable = offset + length == size ? (int) length : lastLineEnd(region);
+				if (usable == 0) {
+					throw new IOException("Line at offset " + offset + " is longer than " + REGION_SIZE + " bytes");
+				}
+
+				submitInBatches(parseRegion(region, offset, usable));
+				offset += usable;
+			}
+
+			// Wait for all outstanding transactions to complete
+			inFlight.acquire(maxInFlight);
+			inFlight.release(maxInFlight);
+		} finally {
+			reporter.shutdownNow();
+			parsers.shutdownNow();
+			submitters.shutdown();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long processed = imported.sum() + existing.sum() + failed.sum();
+		System.out.printf("*** Import complete: %d imported, %d already existed, %d failed, %d malformed lines skipped"
+				+ " in %.1fs (%.0f records/s)%n",
+				imported.sum(), existing.sum(), failed.sum(), malformed.sum(), seconds, processed / seconds);
+
+		if (failed.sum() > 0) {
+			System.out.println("*** Checkpoint held before the first batch with failures; rerun the import to retry them");
+			return false;
+		}
+		return true;
+	}
+
+	private static int lastLineEnd(final ByteBuffer region) {
+		for (int i = region.limit() - 1; i >= 0; i--) {
+			if (region.get(i) == '\n') {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	private List<Record> parseRegion(final ByteBuffer region, final long regionOffset, final int length)
+			throws InterruptedException, ExecutionException {
+		int chunkCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), length / (1024 * 1024)));
+
+		List<Future<List<Record>>> chunks = new ArrayList<>(chunkCount);
+		int chunkStart = 0;
+		for (int i = 1; i <= chunkCount && chunkStart < length; i++) {
+			int chunkEnd = i == chunkCount ? length : nextLineStart(region, (int) ((long) length * i / chunkCount), length);
+			int from = chunkStart;
+			chunks.add(parsers.submit(() -> parseChunk(region.duplicate(), regionOffset, from, chunkEnd)));
+			chunkStart = chunkEnd;
+		}
+
+		List<Record> records = new ArrayList<>();
+		for (Future<List<Record>> chunk : chunks) {
+			records.addAll(chunk.get());
+		}
+		return records;
+	}
+
+	private static int nextLineStart(final ByteBuffer region, final int position, final int limit) {
+		for (int i = position; i < limit; i++) {
+			if (region.get(i) == '\n') {
+				return i + 1;
+			}
+		}
+		return limit;
+	}
+
+	private List<Record> parseChunk(final ByteBuffer region, final long regionOffset, final int from, final int to) {
+		List<Record> records = new ArrayList<>();
+		byte[] line = new byte[256];
+
+		int lineStart = from;
+		while (lineStart < to) {
+			int lineEnd = nextLineStart(region, lineStart, to);
+			int length = lineEnd - lineStart;
+			if (line.length < length) {
+				line = new byte[length];
+			}
+			region.position(lineStart);
+			region.get(line, 0, length);
+
+			String text = new String(line, 0, length, StandardCharsets.UTF_8).trim();
+			if (!text.isEmpty()) {
+				try {
+					Asset asset = csv ? parseCsv(text) : AssetReader.parseAsset(text);
+					if (asset != null) {
+						records.add(new Record(asset, regionOffset + lineEnd));
+					}
+				} catch (RuntimeException e) {
+					malformed.increment();
+					System.err.println("Skipping malformed line at offset " + (regionOffset + lineStart) + ": " + e);
+				}
+			}
+
+			lineStart = lineEnd;
+		}
+
+		return records;
+	}
+
+	private static Asset parseCsv(final String line) {
+		String[] fields = line.split(",", -1);
+		if (fields[0].trim().equalsIgnoreCase("ID")) {
+			return null; // Header
+		}
+		if (fields.length < 5) {
+			throw new IllegalArgumentException("Expected 5 fields: " + line);
+		}
+
+		return new Asset(fields[0].trim(), fields[1].trim(), Integer.parseInt(fields[2].trim()), fields[3].trim(),
+				Integer.parseInt(fields[4].trim()));
+	}
+
+	private void submitInBatches(final List<Record> records) throws InterruptedException {
+		for (int batchStart = 0; batchStart < records.size(); batchStart += batchSize) {
+			List<Record> batch = records.subList(batchStart, Math.min(records.size(), batchStart + batchSize));
+			long batchNumber = nextBatch++;
+			long batchEndOffset = batch.get(batch.size() - 1).endOffset;
+			AtomicInteger remaining = new AtomicInteger(batch.size());
+			AtomicInteger batchFailures = new AtomicInteger();
+
+			for (Record record : batch) {
+				inFlight.acquire();
+				submitters.execute(() -> {
+					try {
+						if (!importAsset(record.asset)) {
+							batchFailures.incrementAndGet();
+						}
+					} finally {
+						if (remaining.decrementAndGet() == 0) {
+							onBatchComplete(batchNumber, batchEndOffset, batchFailures.get() == 0);
+						}
+						inFlight.release();
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Submit a CreateAsset transaction, retrying failures. A transaction that committed without its status being
+	 * observed is reported as already existing when retried.
+	 * @return true if the asset was imported or already existed.
+	 */
+	private boolean importAsset(final Asset asset) {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				contract.submitTransaction("CreateAsset", asset.getId(), asset.getColor(),
+						Integer.toString(asset.getSize()), asset.getOwner(), Integer.toString(asset.getAppraisedValue()));
+				imported.increment();
+				return true;
+			} catch (EndorseException e) {
+				if (isAlreadyExists(e)) {
+					existing.increment();
+					return true;
+				}
+				if (!retry(asset, attempt, e)) {
+					return false;
+				}
+			} catch (GatewayException | CommitException | RuntimeException e) {
+				if (!retry(asset, attempt, e)) {
+					return false;
+				}
+			}
+		}
+	}
+
+	private boolean retry(final Asset asset, final int attempt, final Exception e) {
+		if (attempt >= RETRY_POLICY.getMaxAttempts()) {
+			recordFailure(asset, e);
+			return false;
+		}
+
+		try {
+			Thread.sleep(RETRY_POLICY.backoff(attempt).toMillis());
+			return true;
+		} catch (InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+			recordFailure(asset, e);
+			return false;
+		}
+	}
+
+	private static boolean isAlreadyExists(final EndorseException e) {
+		return e.getDetails().stream().anyMatch(detail -> detail.getMessage().contains("already exists"));
+	}
+
+	private void recordFailure(final Asset asset, final Exception e) {
+		failed.increment();
+		System.err.println("Failed to import asset " + asset.getId() + ": " + e);
+	}
+
+	private synchronized void onBatchComplete(final long batchNumber, final long endOffset, final boolean successful) {
+		if (!successful) {
+			// Never checkpoint at or beyond a batch with failures, so that a rerun attempts its records again
+			if (firstFailedBatch == null || batchNumber < firstFailedBatch) {
+				firstFailedBatch = batchNumber;
+			}
+			return;
+		}
+		if (firstFailedBatch != null && batchNumber > firstFailedBatch) {
+			return;
+		}
+
+		completedBatches.put(batchNumber, endOffset);
+
+		Long checkpointOffset = null;
+		while (completedBatches.containsKey(nextCheckpointBatch)) {
+			checkpointOffset = completedBatches.remove(nextCheckpointBatch++);
+		}
+
+		if (checkpointOffset != null) {
+			try {
+				writeCheckpoint(checkpointOffset);
+			} catch (IOException e) {
+				System.err.println("Failed to write checkpoint: " + e);
+			}
+		}
+	}
+
+	private long readCheckpoint() throws IOException {
+		if (!Files.exists(checkpointPath)) {
+			return 0;
+		}
+		return Long.parseLong(Files.readString(checkpointPath).trim());
+	}
+
+	private void writeCheckpoint(final long offset) throws IOException {
+		Path tempPath = Paths.get(checkpointPath + ".tmp");
+		Files.writeString(tempPath, Long.toString(offset));
+		Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static final class Record {
+		private final Asset asset;
+		private final long endOffset;
+
+		Record(final Asset asset, final long endOffset) {
+			this.asset = asset;
+			this.endOffset = endOffset;
+		}
+	}
+
+	private final class ProgressReport implements Runnable {
+		private final long start;
+		private long lastTime;
+		private long lastProcessed = 0;
+
+		ProgressReport(final long start) {
+			this.start = start;
+			this.lastTime = start;
+		}
+
+		@Override
+		public void run() {
+			long now = System.nanoTime();
+			long processed = imported.sum() + existing.sum() + failed.sum();
+
+			double recent = (processed - lastProcessed) / ((now - lastTime) / 1e9);
+			double overall = processed / ((now - start) / 1e9);
+			System.out.printf("*** %d records processed: %.0f records/s (%.0f records/s overall), %d failed%n",
+					processed, recent, overall, failed.sum());
+
+			lastTime = now;
+			lastProcessed = processed;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.GatewayException;
+
+/**
+ * Coalesces concurrent evaluate requests for the same transaction function and arguments into a single call to the
+ * Gateway peer. The first caller makes the call, and every caller that arrives while it is in flight receives the same
+ * result, or the same error.
+ * <p>
+ * An optional time-to-live keeps successful results for a short time after the call completes, so that a burst of
+ * reads for a hot key is served by one call. Results may then be up to that long out of date, so a zero TTL is the
+ * right choice unless slightly stale reads are acceptable.
+ */
+public final class CoalescingEvaluator {
+	private static final int SWEEP_INTERVAL = 1024;
+
+	private final Contract contract;
+	private final long ttlNanos;
+	private final ConcurrentMap<List<String>, Call> calls = new ConcurrentHashMap<>();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder peerCalls = new LongAdder();
+
+	public CoalescingEvaluator(final Contract contract) {
+		this(contract, Duration.ZERO);
+	}
+
+	public CoalescingEvaluator(final Contract contract, final Duration ttl) {
+		this.contract = contract;
+		this.ttlNanos = ttl.toNanos();
+	}
+
+	public byte[] evaluateTransaction(final String name, final String... args) throws GatewayException {
+		requests.increment();
+		if (ttlNanos > 0 && requests.sum() % SWEEP_INTERVAL == 0) {
+			sweepExpired();
+		}
+
+		List<String> key = key(name, args);
+		long now = System.nanoTime();
+		Call newCall = new Call();
+		Call call = calls.compute(key, (k, existing) -> existing != null && !existing.isExpired(now) ? existing : newCall);
+
+		if (call != newCall) {
+			return call.join().clone();
+		}
+
+		peerCalls.increment();
+		try {
+			byte[] result = contract.evaluateTransaction(name, args);
+			call.complete(result);
+			if (ttlNanos == 0) {
+				calls.remove(key, call);
+			}
+			return result.clone();
+		} catch (GatewayException | RuntimeException e) {
+			// Errors are shared with callers already waiting but never cached
+			calls.remove(key, call);
+			call.future.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	private static List<String> key(final String name, final String... args) {
+		List<String> key = new ArrayList<>(args.length + 1);
+		key.add(name);
+		Collections.addAll(key, args);
+		return key;
+	}
+
+	private void sweepExpired() {
+		long now = System.nanoTime();
+		calls.values().removeIf(call -> call.isExpired(now));
+	}
+
+	/**
+	 * Number of evaluate requests made by callers.
+	 */
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	/**
+	 * Number of evaluate calls actually sent to the Gateway peer.
+	 */
+	public long getPeerCallCount() {
+		return peerCalls.sum();
+	}
+
+	private final class Call {
+		private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+		private volatile long completedAt;
+
+		void complete(final byte[] result) {
+			completedAt = System.nanoTime();
+			future.complete(result);
+		}
+
+		boolean isExpired(final long now) {
+			return future.isDone() && (future.isCompletedExceptionally() || now - completedAt >= ttlNanos);
+		}
+
+		byte[] join() throws GatewayException {
+			try {
+				return future.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof GatewayException) {
+					throw (GatewayException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw e;
+			}
+		}
+	}
+}
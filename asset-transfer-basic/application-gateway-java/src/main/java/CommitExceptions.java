@@ -0,0 +1,52 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.Status;
+
+/**
+ * Creates the {@link CommitException} that {@code Contract.submitTransaction} throws for a transaction that fails to
+ * commit, for code that submits in separate steps because it also needs the commit status of a successful
+ * transaction. Callers can then handle a failed commit the same way whichever path submitted the transaction.
+ * <p>
+ * The exception has no public constructor, so it is created reflectively.
+ */
+public final class CommitExceptions {
+	private static final Constructor<CommitException> CONSTRUCTOR = commitExceptionConstructor();
+
+	private CommitExceptions() {
+		// Private constructor to prevent instantiation
+	}
+
+	private static Constructor<CommitException> commitExceptionConstructor() {
+		try {
+			Constructor<CommitException> constructor = CommitException.class.getDeclaredConstructor(Status.class);
+			constructor.setAccessible(true);
+			return constructor;
+		} catch (NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Throw a {@link CommitException} if the transaction failed to commit.
+	 */
+	public static void checkSuccessful(final Status status) throws CommitException {
+		if (status.isSuccessful()) {
+			return;
+		}
+
+		try {
+			throw CONSTRUCTOR.newInstance(status);
+		} catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException("Transaction " + status.getTransactionId()
+					+ " failed to commit with status code " + status.getCode(), e);
+		}
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.FilteredBlockEventsRequest;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.client.Proposal;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmitException;
+import org.hyperledger.fabric.client.Transaction;
+import org.hyperledger.fabric.client.identity.Signer;
+import org.hyperledger.fabric.protos.common.BlockchainInfo;
+import org.hyperledger.fabric.protos.peer.FilteredBlock;
+import org.hyperledger.fabric.protos.peer.FilteredTransaction;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+
+/**
+ * Tracks the commit status of many in-flight transactions using a single filtered block event stream, instead of a
+ * separate commit status call for each transaction. Every transaction ID in each received block is matched against
+ * the pending transactions, and their futures completed with the validation code from the block.
+ * <p>
+ * Block events are received from the ledger height when the tracker is created, read with the qscc GetChainInfo
+ * function, so that a transaction submitted straight afterwards is seen even if the event stream is slow to open.
+ * Transactions must be registered before they are submitted to the orderer. Statuses from a number of recent blocks
+ * are also retained to cover a transaction that is registered late, after its block has already been received.
+ * <p>
+ * If block events cannot be received for any reason other than a failure of the event stream, which is retried, the
+ * tracker closes itself and fails every pending transaction.
+ * <p>
+ * With a Gateway connected without a signer, supply the signer used to sign the chain info query and each block event
+ * request explicitly. These are recreated from their signatures using {@link Gateway#newSignedProposal(byte[], byte[])}
+ * and {@link Gateway#newSignedFilteredBlockEventsRequest(byte[], byte[])}.
+ */
+public final class CommitTracker implements AutoCloseable {
+	private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+	private final Gateway gateway;
+	private final Network network;
+	private final Signer signer;
+	private final int retainedBlocks;
+	private final Map<String, CompletableFuture<Status>> pending = new ConcurrentHashMap<>();
+	private final Map<String, Status> recentStatuses = new ConcurrentHashMap<>();
+	private final Deque<List<String>> recentBlocks = new ArrayDeque<>();
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private volatile CloseableIterator<FilteredBlock> blocks;
+	private volatile boolean closed = false;
+	private long nextBlockNumber;
+
+	public CommitTracker(final Network network, final int retainedBlocks) throws GatewayException {
+		this(null, network, null, retainedBlocks);
+	}
+
+	/**
+	 * @param gateway Gateway connected without a signer, from which the network was obtained.
+	 * @param signer Signer for block event requests.
+	 */
+	public CommitTracker(final Gateway gateway, final Network network, final Signer signer, final int retainedBlocks)
+			throws GatewayException {
+		this.gateway = gateway;
+		this.network = network;
+		this.signer = signer;
+		this.retainedBlocks = retainedBlocks;
+		this.nextBlockNumber = readLedgerHeight();
+		this.blocks = newBlockEvents();
+		executor.execute(this::receiveBlocks);
+	}
+
+	/**
+	 * Register a transaction and submit it to the orderer, returning a future that completes once the transaction has
+	 * been committed, whether or not it was valid.
+	 */
+	public CompletableFuture<Status> submit(final Transaction transaction) throws SubmitException {
+		CompletableFuture<Status> status = track(transaction.getTransactionId());
+		try {
+			transaction.submitAsync();
+		} catch (SubmitException e) {
+			pending.remove(transaction.getTransactionId());
+			throw e;
+		}
+		return status;
+	}
+
+	public CompletableFuture<Status> track(final String transactionId) {
+		if (closed) {
+			throw new IllegalStateException("Commit tracker is closed");
+		}
+
+		CompletableFuture<Status> future = pending.computeIfAbsent(transactionId, id -> new CompletableFuture<>());
+		if (closed) {
+			// Closed while registering, so the future might not have been failed along with the other pending ones.
+			pending.remove(transactionId);
+			future.completeExceptionally(new IllegalStateException("Commit tracker is closed"));
+			return future;
+		}
+
+		// The block may have been received between the caller submitting and registering the transaction.
+		Status status = recentStatuses.get(transactionId);
+		if (status != null) {
+			pending.remove(transactionId);
+			future.complete(status);
+		}
+
+		return future;
+	}
+
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	private void receiveBlocks() {
+		try {
+			while (!closed) {
+				try {
+					blocks.forEachRemaining(this::onBlock);
+				} catch (GatewayRuntimeException e) {
+					if (closed) {
+						return;
+					}
+					System.err.println("Block event stream failed, reconnecting: " + e);
+				}
+
+				if (!closed) {
+					reconnect();
+				}
+			}
+		} catch (RuntimeException e) {
+			if (closed) {
+				return;
+			}
+			// Nothing else will complete the pending transactions, so fail them rather than leave them waiting
+			System.err.println("Commit tracking failed, closing tracker: " + e);
+			closed = true;
+			blocks.close();
+			failPending(new IllegalStateException("Commit tracking failed", e));
+		}
+	}
+
+	private void reconnect() {
+		try {
+			Thread.sleep(RECONNECT_DELAY_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		blocks = newBlockEvents();
+	}
+
+	private long readLedgerHeight() throws GatewayException {
+		Proposal proposal = network.getContract("qscc").newProposal("GetChainInfo")
+				.addArguments(network.getName())
+				.build();
+		if (signer != null) {
+			proposal = gateway.newSignedProposal(proposal.getBytes(), sign(proposal.getDigest()));
+		}
+
+		try {
+			return BlockchainInfo.parseFrom(proposal.evaluate()).getHeight();
+		} catch (InvalidProtocolBufferException e) {
+			throw new IllegalStateException("Unable to parse chain info", e);
+		}
+	}
+
+	private CloseableIterator<FilteredBlock> newBlockEvents() {
+		// Resume after the last block received so that no commits are missed while disconnected.
+		FilteredBlockEventsRequest request = network.newFilteredBlockEventsRequest().startBlock(nextBlockNumber).build();
+		if (signer == null) {
+			return request.getEvents();
+		}
+
+		byte[] signature = sign(request.getDigest());
+		return gateway.newSignedFilteredBlockEventsRequest(request.getBytes(), signature).getEvents();
+	}
+
+	private byte[] sign(final byte[] digest) {
+		try {
+			return signer.sign(digest);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Failed to sign request", e);
+		}
+	}
+
+	private void onBlock(final FilteredBlock block) {
+		long blockNumber = block.getNumber();
+		List<String> transactionIds = new ArrayList<>(block.getFilteredTransactionsCount());
+
+		for (FilteredTransaction transaction : block.getFilteredTransactionsList()) {
+			String transactionId = transaction.getTxid();
+			Status status = new BlockStatus(transactionId, blockNumber, transaction.getTxValidationCode());
+
+			recentStatuses.put(transactionId, status);
+			transactionIds.add(transactionId);
+
+			CompletableFuture<Status> future = pending.remove(transactionId);
+			if (future != null) {
+				future.complete(status);
+			}
+		}
+
+		recentBlocks.addLast(transactionIds);
+		while (recentBlocks.size() > retainedBlocks) {
+			recentBlocks.removeFirst().forEach(recentStatuses::remove);
+		}
+
+		nextBlockNumber = blockNumber + 1;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		blocks.close();
+		executor.shutdownNow();
+
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		failPending(new IllegalStateException("Commit tracker closed"));
+	}
+
+	private void failPending(final Throwable cause) {
+		pending.values().forEach(future -> future.completeExceptionally(cause));
+		pending.clear();
+	}
+
+	private static final class BlockStatus implements Status {
+		private final String transactionId;
+		private final long blockNumber;
+		private final TxValidationCode code;
+
+		BlockStatus(final String transactionId, final long blockNumber, final TxValidationCode code) {
+			this.transactionId = transactionId;
+			this.blockNumber = blockNumber;
+			this.code = code;
+		}
+
+		@Override
+		public String getTransactionId() {
+			return transactionId;
+		}
+
+		@Override
+		public long getBlockNumber() {
+			return blockNumber;
+		}
+
+		@Override
+		public TxValidationCode getCode() {
+			return code;
+		}
+
+		@Override
+		public boolean isSuccessful() {
+			return code == TxValidationCode.VALID;
+		}
+
+		@Override
+		public String toString() {
+			return "BlockStatus{transactionId=" + transactionId + ", blockNumber=" + blockNumber + ", code=" + code + "}";
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts commit attempts and conflicts per transaction function and per key prefix, along with the number of attempts
+ * each logical operation needed. Prefixes are the leading characters of the key, which is enough to show which ranges
+ * of the key space are hot without keeping a counter for every individual key.
+ */
+public final class ConflictMetrics {
+	private final int keyPrefixLength;
+	private final ConcurrentMap<String, Counts> byFunction = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Counts> byKeyPrefix = new ConcurrentHashMap<>();
+	private final AtomicLongArray attemptsPerOperation;
+	private final LongAdder abandoned = new LongAdder();
+
+	public ConflictMetrics(final int keyPrefixLength, final int maxAttempts) {
+		this.keyPrefixLength = keyPrefixLength;
+		this.attemptsPerOperation = new AtomicLongArray(maxAttempts + 1);
+	}
+
+	public void recordAttempt(final String function, final String key, final boolean conflict) {
+		byFunction.computeIfAbsent(function, k -> new Counts()).record(conflict);
+		if (key != null) {
+			byKeyPrefix.computeIfAbsent(keyPrefix(key), k -> new Counts()).record(conflict);
+		}
+	}
+
+	public void recordCompleted(final int attempts) {
+		attemptsPerOperation.incrementAndGet(Math.min(attempts, attemptsPerOperation.length() - 1));
+	}
+
+	public void recordAbandoned(final int attempts) {
+		recordCompleted(attempts);
+		abandoned.increment();
+	}
+
+	private String keyPrefix(final String key) {
+		return key.length() <= keyPrefixLength ? key : key.substring(0, keyPrefixLength);
+	}
+
+	public Map<String, Double> getConflictRateByFunction() {
+		return conflictRates(byFunction);
+	}
+
+	public Map<String, Double> getConflictRateByKeyPrefix() {
+		return conflictRates(byKeyPrefix);
+	}
+
+	private static Map<String, Double> conflictRates(final Map<String, Counts> counts) {
+		Map<String, Double> rates = new TreeMap<>();
+		counts.forEach((name, count) -> rates.put(name, count.conflictRate()));
+		return rates;
+	}
+
+	/**
+	 * Number of logical operations that completed, successfully or not, after the given number of attempts.
+	 */
+	public long getOperationCount(final int attempts) {
+		return attemptsPerOperation.get(attempts);
+	}
+
+	public long getAbandonedCount() {
+		return abandoned.sum();
+	}
+
+	public String summary() {
+		StringBuilder result = new StringBuilder();
+
+		result.append("Conflict rate by function:\n");
+		appendCounts(result, byFunction);
+		result.append("Conflict rate by key prefix:\n");
+		appendCounts(result, byKeyPrefix);
+
+		result.append("Attempts per operation:\n");
+		for (int i = 1; i < attemptsPerOperation.length(); i++) {
+			long count = attemptsPerOperation.get(i);
+			if (count > 0) {
+				result.append(String.format("- %d: %d%n", i, count));
+			}
+		}
+		result.append("Abandoned operations: ").append(abandoned.sum()).append('\n');
+
+		return result.toString();
+	}
+
+	/**
+	 * Metrics in the Prometheus text exposition format. Conflict rates are derived from the attempt and conflict
+	 * counters by the monitoring system, for example with {@code rate(gateway_commit_conflicts_total[5m]) /
+	 * rate(gateway_commit_attempts_total[5m])}.
+	 */
+	public String render() {
+		StringBuilder result = new StringBuilder();
+
+		result.append("# TYPE gateway_commit_attempts_total counter\n");
+		appendCounters(result, "gateway_commit_attempts_total", "function", byFunction, false);
+		appendCounters(result, "gateway_commit_attempts_total", "key_prefix", byKeyPrefix, false);
+		result.append("# TYPE gateway_commit_conflicts_total counter\n");
+		appendCounters(result, "gateway_commit_conflicts_total", "function", byFunction, true);
+		appendCounters(result, "gateway_commit_conflicts_total", "key_prefix", byKeyPrefix, true);
+
+		result.append("# TYPE gateway_operation_attempts_total counter\n");
+		for (int i = 1; i < attemptsPerOperation.length(); i++) {
+			result.append(String.format("gateway_operation_attempts_total{attempts=\"%d\"} %d%n", i,
+					attemptsPerOperation.get(i)));
+		}
+		result.append("# TYPE gateway_operations_abandoned_total counter\n");
+		result.append("gateway_operations_abandoned_total ").append(abandoned.sum()).append('\n');
+
+		return result.toString();
+	}
+
+	private static void appendCounters(final StringBuilder result, final String metric, final String label,
+			final Map<String, Counts> counts, final boolean conflicts) {
+		new TreeMap<>(counts).forEach((name, count) -> result.append(String.format("%s{%s=\"%s\"} %d%n", metric, label,
+				escapeLabel(name), conflicts ? count.conflicts.sum() : count.attempts.sum())));
+	}
+
+	/**
+	 * Key prefixes are taken from client data, so may contain characters that must be escaped in a label value.
+	 */
+	private static String escapeLabel(final String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	private static void appendCounts(final StringBuilder result, final Map<String, Counts> counts) {
+		new TreeMap<>(counts).forEach((name, count) -> result.append(String.format("- %s: %d/%d (%.2f%%)%n",
+				name, count.conflicts.sum(), count.attempts.sum(), count.conflictRate() * 100)));
+	}
+
+	private static final class Counts {
+		private final LongAdder attempts = new LongAdder();
+		private final LongAdder conflicts = new LongAdder();
+
+		void record(final boolean conflict) {
+			attempts.increment();
+			if (conflict) {
+				conflicts.increment();
+			}
+		}
+
+		double conflictRate() {
+			long total = attempts.sum();
+			return total == 0 ? 0 : (double) conflicts.sum() / total;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.grpc.ManagedChannel;
+import org.hyperledger.fabric.client.CallOption;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.Transaction;
+import org.hyperledger.fabric.client.identity.Signer;
+
+/**
+ * Endorses CreateAsset transactions for the assets in a newline-delimited JSON file, and writes the signed, endorsed
+ * transactions to a {@link TransactionBundle} instead of submitting them. The bundle can then be submitted to the
+ * orderer at a later time, or from another process, using {@link SubmitBundle}.
+ * <p>
+ * Endorsements capture the versions of the ledger keys read during simulation. A transaction in the bundle fails
+ * validation with an MVCC_READ_CONFLICT if any of those keys are updated before it is committed, so bundles should be
+ * submitted while the keys they touch are not being updated by other means.
+ * <p>
+ * Usage: {@code ./gradlew endorseBundle --args="<input file> <bundle file> [max in flight]"}
+ */
+public final class EndorseBundle {
+	private static final String channelName = "mychannel";
+	private static final String chaincodeName = "basic";
+
+	private static final int DEFAULT_MAX_IN_FLIGHT = 50;
+
+	private final Contract contract;
+	private final Signer signer;
+	private final Semaphore inFlight;
+	private final ExecutorService endorsers;
+	private final LongAdder failed = new LongAdder();
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: EndorseBundle <input file> <bundle file> [max in flight]");
+			System.exit(1);
+		}
+
+		Path inputPath = Paths.get(args[0]);
+		Path bundlePath = Paths.get(args[1]);
+		int maxInFlight = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_IN_FLIGHT;
+
+		ManagedChannel channel = Connections.newGrpcConnection();
+		Signer signer = Connections.newSigner();
+		Gateway.Builder builder = Gateway.newInstance()
+				.identity(Connections.newIdentity())
+				.signer(signer)
+				.connection(channel)
+				.endorseOptions(CallOption.deadlineAfter(15, TimeUnit.SECONDS));
+
+		try (Gateway gateway = builder.connect()) {
+			Contract contract = gateway.getNetwork(channelName).getContract(chaincodeName);
+			new EndorseBundle(contract, signer, maxInFlight).run(inputPath, bundlePath);
+		} finally {
+			channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * @param signer Signer for the transaction envelopes, which must be the one used by the contract's Gateway.
+	 */
+	public EndorseBundle(final Contract contract, final Signer signer, final int maxInFlight) {
+		this.contract = contract;
+		this.signer = signer;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.endorsers = Executors.newFixedThreadPool(maxInFlight);
+	}
+
+	public void run(final Path inputPath, final Path bundlePath) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+
+		try (BufferedReader reader = Files.newBufferedReader(inputPath, StandardCharsets.UTF_8);
+				TransactionBundle.Writer bundle = new TransactionBundle.Writer(bundlePath)) {
+			try {
+				for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+					if (line.isBlank()) {
+						continue;
+					}
+
+					Asset asset = AssetReader.parseAsset(line);
+					inFlight.acquire();
+					endorsers.execute(() -> {
+						try {
+							bundle.add(endorse(asset));
+						} catch (Exception e) {
+							failed.increment();
+							System.err.println("Failed to endorse " + asset.getId() + ": " + e);
+						} finally {
+							inFlight.release();
+						}
+					});
+				}
+			} finally {
+				// Wait for endorsements in progress to be added before the bundle is closed.
+				endorsers.shutdown();
+				endorsers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			}
+
+			// Only a bundle that has read the whole input is kept; if anything above failed, close() discards it.
+			bundle.commit();
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("Endorsed %d transactions into %s in %.1fs, %d failed%n",
+					bundle.getCount(), bundlePath, seconds, failed.sum());
+		}
+	}
+
+	private TransactionBundle.Entry endorse(final Asset asset) throws Exception {
+		Transaction transaction = contract.newProposal("CreateAsset")
+				.addArguments(asset.getId(), asset.getColor(),
+						Integer.toString(asset.getSize()), asset.getOwner(), Integer.toString(asset.getAppraisedValue()))
+				.build()
+				.endorse();
+
+		// Sign the envelope now, so that the submitting process can recreate the signed transaction as it was endorsed.
+		byte[] signature = signer.sign(transaction.getDigest());
+		return new TransactionBundle.Entry(transaction.getTransactionId(), transaction.getBytes(), signature);
+	}
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import org.hyperledger.fabric.client.CallOption;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.GatewayException;
+
+/**
+ * Evaluates transactions with hedged requests to reduce tail latency. If the first Gateway peer has not responded
+ * within the hedge delay, or fails before then with a transport error such as UNAVAILABLE, the same request is sent to
+ * a second Gateway peer and whichever responds successfully first is used. The other call is then cancelled. Errors
+ * returned by the smart contract are reported straight away, since another peer would return the same error.
+ * <p>
+ * The hedge delay tracks a percentile of recently observed evaluate latency, so only the slowest few percent of
+ * requests are duplicated. Every call contributes to the observed latency, including failed calls and the losing call
+ * of a hedged pair, whose time until cancellation is a lower bound on its latency. Otherwise only the faster responses
+ * would be observed and the hedge delay would drift lower. Call deadlines also adapt to observed latency rather than
+ * being fixed, within the configured bounds.
+ * <p>
+ * Each contract must be obtained from a Gateway connected to a different peer, otherwise a hedged request is sent to
+ * the same, slow, peer.
+ */
+public final class HedgedEvaluator implements AutoCloseable {
+	private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+	private static final long MIN_WINDOW_SAMPLES = 100;
+	private static final int DEADLINE_MULTIPLIER = 4;
+
+	private final List<Contract> contracts;
+	private final double hedgePercentile;
+	private final Duration minHedgeDelay;
+	private final Duration minDeadline;
+	private final Duration maxDeadline;
+	private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "hedged-evaluate");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicInteger nextContract = new AtomicInteger();
+	private final AtomicReference<Histogram> currentWindow = new AtomicReference<>(new Histogram());
+	private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+	private volatile Histogram previousWindow = new Histogram();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder hedges = new LongAdder();
+
+	/**
+	 * @param contracts The same contract obtained from Gateway connections to different peers.
+	 * @param hedgePercentile Latency percentile, from 0 to 100, after which a hedged request is sent.
+	 * @param minHedgeDelay Lower bound on the hedge delay, limiting duplicate load while latency is very low.
+	 * @param minDeadline Lower bound on the call deadline.
+	 * @param maxDeadline Upper bound on the call deadline, and the deadline used before latency has been observed.
+	 */
+	public HedgedEvaluator(final List<Contract> contracts, final double hedgePercentile, final Duration minHedgeDelay,
+			final Duration minDeadline, final Duration maxDeadline) {
+		if (contracts.isEmpty()) {
+			throw new IllegalArgumentException("At least one contract is required");
+		}
+
+		this.contracts = List.copyOf(contracts);
+		this.hedgePercentile = hedgePercentile;
+		this.minHedgeDelay = minHedgeDelay;
+		this.minDeadline = minDeadline;
+		this.maxDeadline = maxDeadline;
+	}
+
+	public byte[] evaluateTransaction(final String name, final String... args)
+			throws GatewayException, InterruptedException {
+		requests.increment();
+
+		int primary = Math.floorMod(nextContract.getAndIncrement(), contracts.size());
+		Attempt first = new Attempt(contracts.get(primary), name, args);
+		if (contracts.size() == 1) {
+			return first.await();
+		}
+
+		try {
+			return first.future.get(hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			// Primary is slow, so fall through and hedge
+		} catch (ExecutionException e) {
+			if (!isTransportFailure(e.getCause())) {
+				throw unwrap(e.getCause());
+			}
+			// Primary could not be reached, so fall through and hedge
+		} catch (InterruptedException e) {
+			first.cancel();
+			throw e;
+		}
+
+		hedges.increment();
+		Attempt second = new Attempt(contracts.get((primary + 1) % contracts.size()), name, args);
+		try {
+			return firstSuccessful(first.future, second.future).join();
+		} catch (CompletionException e) {
+			throw unwrap(e.getCause());
+		} finally {
+			first.cancel();
+			second.cancel();
+		}
+	}
+
+	private static CompletableFuture<byte[]> firstSuccessful(final CompletableFuture<byte[]> a,
+			final CompletableFuture<byte[]> b) {
+		CompletableFuture<byte[]> result = new CompletableFuture<>();
+		AtomicInteger failures = new AtomicInteger();
+
+		for (CompletableFuture<byte[]> future : List.of(a, b)) {
+			future.whenComplete((value, t) -> {
+				if (t == null) {
+					result.complete(value);
+				} else if (failures.incrementAndGet() == 2) {
+					result.completeExceptionally(t);
+				}
+			});
+		}
+
+		return result;
+	}
+
+	private long hedgeDelayNanos() {
+		Histogram latencies = latencyWindow();
+		if (latencies == null) {
+			return maxDeadline.toNanos();
+		}
+		return Math.max(minHedgeDelay.toNanos(), latencies.getValueAtPercentile(hedgePercentile));
+	}
+
+	private long deadlineMillis() {
+		Histogram latencies = latencyWindow();
+		if (latencies == null) {
+			return maxDeadline.toMillis();
+		}
+
+		long deadline = TimeUnit.NANOSECONDS.toMillis(latencies.getValueAtPercentile(99.9) * DEADLINE_MULTIPLIER);
+		return Math.min(maxDeadline.toMillis(), Math.max(minDeadline.toMillis(), deadline));
+	}
+
+	/**
+	 * Latency observations for the last complete window, or the current window if the last one had too few samples
+	 * to be meaningful. Null if neither has enough samples.
+	 */
+	private Histogram latencyWindow() {
+		Histogram previous = previousWindow;
+		if (previous.getCount() >= MIN_WINDOW_SAMPLES) {
+			return previous;
+		}
+
+		Histogram current = currentWindow.get();
+		return current.getCount() >= MIN_WINDOW_SAMPLES ? current : null;
+	}
+
+	private void recordLatency(final long nanos) {
+		long now = System.nanoTime();
+		long start = windowStart.get();
+		if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+			previousWindow = currentWindow.getAndSet(new Histogram());
+		}
+
+		currentWindow.get().record(nanos);
+	}
+
+	/**
+	 * Whether a call failed to reach the peer or get a response in time, rather than being answered with an error.
+	 */
+	private static boolean isTransportFailure(final Throwable cause) {
+		if (cause instanceof CompletionException && cause.getCause() != null) {
+			return isTransportFailure(cause.getCause());
+		}
+		if (!(cause instanceof GatewayException)) {
+			return false;
+		}
+
+		Status.Code code = ((GatewayException) cause).getStatus().getCode();
+		return code == Status.Code.UNAVAILABLE || code == Status.Code.DEADLINE_EXCEEDED
+				|| code == Status.Code.RESOURCE_EXHAUSTED;
+	}
+
+	private static GatewayException unwrap(final Throwable cause) {
+		if (cause instanceof CompletionException && cause.getCause() != null) {
+			return unwrap(cause.getCause());
+		}
+		if (cause instanceof GatewayException) {
+			return (GatewayException) cause;
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		throw new CompletionException(cause);
+	}
+
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	public long getHedgedCount() {
+		return hedges.sum();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * A single evaluate call, run in its own cancellable gRPC context so that the losing call of a hedged pair can be
+	 * abandoned on the peer as well as on the client.
+	 */
+	private final class Attempt {
+		private final Context.CancellableContext context = Context.current().withCancellation();
+		private final CompletableFuture<byte[]> future;
+		private final long start = System.nanoTime();
+		private final AtomicBoolean recorded = new AtomicBoolean();
+
+		Attempt(final Contract contract, final String name, final String... args) {
+			CallOption deadline = CallOption.deadlineAfter(deadlineMillis(), TimeUnit.MILLISECONDS);
+			future = CompletableFuture.supplyAsync(() -> {
+				Context previous = context.attach();
+				try {
+					return contract.newProposal(name)
+							.addArguments(args)
+							.build()
+							.evaluate(deadline);
+				} catch (GatewayException e) {
+					throw new CompletionException(e);
+				} finally {
+					recordElapsed();
+					context.detach(previous);
+				}
+			}, executor);
+		}
+
+		byte[] await() throws GatewayException {
+			try {
+				return future.join();
+			} catch (CompletionException e) {
+				throw unwrap(e.getCause());
+			} finally {
+				cancel();
+			}
+		}
+
+		void cancel() {
+			recordElapsed();
+			context.cancel(null);
+		}
+
+		/**
+		 * Record the time since the call started, once only. A call that is still running when cancelled records the
+		 * time until cancellation.
+		 */
+		private void recordElapsed() {
+			if (recorded.compareAndSet(false, true)) {
+				recordLatency(System.nanoTime() - start);
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Proposal;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmitException;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+import org.hyperledger.fabric.client.Transaction;
+
+/**
+ * Runs the Proposal, Transaction and SubmittedTransaction flow for a contract, recording the duration of each phase,
+ * the request and response payload sizes, and the result code in {@link TransactionMetrics}.
+ * <p>
+ * Result codes are the transaction validation code for committed transactions, or the gRPC status code for calls that
+ * failed before reaching the ledger.
+ */
+public final class InstrumentedContract {
+	private final Contract contract;
+	private final TransactionMetrics metrics;
+
+	public InstrumentedContract(final Contract contract, final TransactionMetrics metrics) {
+		this.contract = contract;
+		this.metrics = metrics;
+	}
+
+	public TransactionMetrics getMetrics() {
+		return metrics;
+	}
+
+	public byte[] evaluateTransaction(final String name, final String... args) throws GatewayException {
+		Proposal proposal = newProposal(name, args);
+
+		long start = System.nanoTime();
+		try {
+			byte[] result = proposal.evaluate();
+			metrics.recordLatency(name, TransactionMetrics.Phase.EVALUATE, System.nanoTime() - start);
+			metrics.recordPayloadSize(name, TransactionMetrics.Direction.RESPONSE, result.length);
+			metrics.recordResult(name, "OK");
+			return result;
+		} catch (GatewayException e) {
+			metrics.recordResult(name, e.getStatus().getCode().name());
+			throw e;
+		}
+	}
+
+	public byte[] submitTransaction(final String name, final String... args)
+			throws EndorseException, SubmitException, CommitStatusException, CommitException {
+		SubmittedTransaction commit = submitAsync(name, args);
+		Status status = getStatus(name, commit);
+		CommitExceptions.checkSuccessful(status);
+
+		return commit.getResult();
+	}
+
+	/**
+	 * Endorse and submit a transaction without waiting for it to commit. Pass the returned transaction to
+	 * {@link #getStatus(String, SubmittedTransaction)} to record the commit wait.
+	 */
+	public SubmittedTransaction submitAsync(final String name, final String... args)
+			throws EndorseException, SubmitException {
+		Proposal proposal = newProposal(name, args);
+
+		long start = System.nanoTime();
+		Transaction transaction;
+		try {
+			transaction = proposal.endorse();
+		} catch (EndorseException e) {
+			metrics.recordResult(name, e.getStatus().getCode().name());
+			throw e;
+		}
+		metrics.recordLatency(name, TransactionMetrics.Phase.ENDORSE, System.nanoTime() - start);
+		metrics.recordPayloadSize(name, TransactionMetrics.Direction.RESPONSE, transaction.getResult().length);
+
+		start = System.nanoTime();
+		try {
+			SubmittedTransaction commit = transaction.submitAsync();
+			metrics.recordLatency(name, TransactionMetrics.Phase.SUBMIT, System.nanoTime() - start);
+			return commit;
+		} catch (SubmitException e) {
+			metrics.recordResult(name, e.getStatus().getCode().name());
+			throw e;
+		}
+	}
+
+	public Status getStatus(final String name, final SubmittedTransaction commit) throws CommitStatusException {
+		long start = System.nanoTime();
+		try {
+			Status status = commit.getStatus();
+			metrics.recordLatency(name, TransactionMetrics.Phase.COMMIT, System.nanoTime() - start);
+			metrics.recordResult(name, status.getCode().name());
+			return status;
+		} catch (CommitStatusException e) {
+			metrics.recordResult(name, e.getStatus().getCode().name());
+			throw e;
+		}
+	}
+
+	private Proposal newProposal(final String name, final String... args) {
+		Proposal proposal = contract.newProposal(name)
+				.addArguments(args)
+				.build();
+		metrics.recordPayloadSize(name, TransactionMetrics.Direction.REQUEST, proposal.getBytes().length);
+		return proposal;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmitException;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+import org.hyperledger.fabric.client.Transaction;
+import org.hyperledger.fabric.client.identity.Signer;
+
+/**
+ * Submits transactions asynchronously, recording them in a {@link TransactionJournal} so that none are lost if the
+ * application stops before they commit. Call {@link #replay()} on startup to complete any transactions left
+ * unresolved by a previous run.
+ * <p>
+ * The transaction envelope is signed here, rather than when it is submitted, so that the signed envelope can be
+ * journaled before it reaches the orderer. The signer must therefore be the same one used by the Gateway.
+ */
+public final class JournaledSubmitter {
+	private final Gateway gateway;
+	private final Contract contract;
+	private final Signer signer;
+	private final TransactionJournal journal;
+
+	public JournaledSubmitter(final Gateway gateway, final Contract contract, final Signer signer,
+			final TransactionJournal journal) {
+		this.gateway = gateway;
+		this.contract = contract;
+		this.signer = signer;
+		this.journal = journal;
+	}
+
+	/**
+	 * Endorse and submit a transaction, returning once it has been accepted by the orderer. The commit outcome is
+	 * journaled when {@link JournaledTransaction#getStatus()} is called.
+	 */
+	public JournaledTransaction submitAsync(final String name, final String... args)
+			throws EndorseException, SubmitException, IOException, GeneralSecurityException {
+		return submit(journal.recordIntent(name, args), name, args);
+	}
+
+	private JournaledTransaction submit(final long sequence, final String name, final String... args)
+			throws EndorseException, SubmitException, IOException, GeneralSecurityException {
+		Transaction unsigned;
+		try {
+			unsigned = contract.newProposal(name)
+					.addArguments(args)
+					.build()
+					.endorse();
+		} catch (EndorseException e) {
+			journal.recordOutcome(sequence, TransactionJournal.NOT_SUBMITTED, 0);
+			throw e;
+		}
+
+		byte[] signature = signer.sign(unsigned.getDigest());
+		journal.recordSubmitted(sequence, unsigned.getTransactionId(), unsigned.getBytes(), signature);
+
+		Transaction signed = gateway.newSignedTransaction(unsigned.getBytes(), signature);
+		return new JournaledTransaction(sequence, signed.submitAsync());
+	}
+
+	/**
+	 * Resolve entries left by a previous run. Entries that never reached the orderer are executed as new
+	 * transactions. Entries that may have reached the orderer are resubmitted using their original signed envelope;
+	 * if the original was already committed, the duplicate is rejected by transaction ID.
+	 *
+	 * @return Transactions from this replay, which must still be waited on for their commit status.
+	 */
+	public List<JournaledTransaction> replay()
+			throws EndorseException, SubmitException, IOException, GeneralSecurityException {
+		List<JournaledTransaction> replayed = new ArrayList<>();
+
+		for (TransactionJournal.Entry entry : journal.getUnresolved()) {
+			if (!entry.isSubmitted()) {
+				// Never sent to the orderer, so it cannot have committed. Run it as a fresh transaction, journaled as a
+				// new entry that replaces this one in a single record.
+				long sequence = journal.recordRetry(entry);
+				replayed.add(submit(sequence, entry.getFunction(), entry.getArgs().toArray(new String[0])));
+				continue;
+			}
+
+			Transaction transaction = gateway.newSignedTransaction(entry.getTransactionBytes(), entry.getSignature());
+			replayed.add(new JournaledTransaction(entry.getSequence(), transaction.submitAsync()));
+		}
+
+		return replayed;
+	}
+
+	/**
+	 * A submitted transaction whose commit status is journaled once known.
+	 */
+	public final class JournaledTransaction {
+		private final long sequence;
+		private final SubmittedTransaction commit;
+
+		private JournaledTransaction(final long sequence, final SubmittedTransaction commit) {
+			this.sequence = sequence;
+			this.commit = commit;
+		}
+
+		public String getTransactionId() {
+			return commit.getTransactionId();
+		}
+
+		public byte[] getResult() {
+			return commit.getResult();
+		}
+
+		/**
+		 * Wait for the transaction to commit and journal the outcome.
+		 */
+		public Status getStatus() throws CommitStatusException {
+			Status status = commit.getStatus();
+			try {
+				journal.recordOutcome(sequence, status.getCode().getNumber(), status.getBlockNumber());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return status;
+		}
+	}
+}
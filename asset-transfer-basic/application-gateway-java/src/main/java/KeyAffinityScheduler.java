@@ -0,0 +1,132 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hyperledger.fabric.client.Contract;
+
+/**
+ * Schedules transactions so that two operations declaring the same key are never in flight at the same time. If they
+ * were, both would be endorsed against the same key version and the one ordered second would be invalidated with an
+ * MVCC read conflict at commit time.
+ * <p>
+ * Keys are hashed onto a fixed number of stripes. An operation starts only once the previous operation on each of its
+ * stripes has committed (or failed), while operations whose stripes do not overlap run in parallel on the worker
+ * pool. Distinct keys may share a stripe, which costs some parallelism but never correctness.
+ */
+public final class KeyAffinityScheduler implements AutoCloseable {
+	private final Contract contract;
+	private final ExecutorService executor;
+	private final CompletableFuture<?>[] stripeTails;
+	private final LongAdder deferred = new LongAdder();
+
+	/**
+	 * An operation to run once it holds its keys. Typically this endorses, submits and waits for commit of a single
+	 * transaction.
+	 */
+	@FunctionalInterface
+	public interface Operation<T> {
+		T run() throws Exception;
+	}
+
+	public KeyAffinityScheduler(final Contract contract, final int stripes, final int workers) {
+		this.contract = contract;
+		this.executor = Executors.newFixedThreadPool(workers);
+		this.stripeTails = new CompletableFuture<?>[stripes];
+		for (int i = 0; i < stripes; i++) {
+			stripeTails[i] = CompletableFuture.completedFuture(null);
+		}
+	}
+
+	/**
+	 * Submit a transaction that reads or writes the given keys, completing with the transaction result once it has
+	 * been committed.
+	 */
+	public CompletableFuture<byte[]> submit(final Collection<String> keys, final String name, final String... args) {
+		return schedule(keys, () -> contract.newProposal(name)
+				.addArguments(args)
+				.build()
+				.endorse()
+				.submit());
+	}
+
+	public <T> CompletableFuture<T> schedule(final Collection<String> keys, final Operation<T> operation) {
+		boolean[] held = new boolean[stripeTails.length];
+		for (String key : keys) {
+			held[stripeOf(key)] = true;
+		}
+
+		// Predecessors and successors must be linked for all stripes atomically. Otherwise two operations spanning
+		// the same pair of stripes could each be queued behind the other.
+		synchronized (stripeTails) {
+			CompletableFuture<?>[] predecessors = new CompletableFuture<?>[keys.size()];
+			int count = 0;
+			boolean waiting = false;
+			for (int i = 0; i < held.length; i++) {
+				if (held[i]) {
+					predecessors[count++] = stripeTails[i];
+					waiting |= !stripeTails[i].isDone();
+				}
+			}
+			if (waiting) {
+				deferred.increment();
+			}
+
+			CompletableFuture<T> result = CompletableFuture.allOf(Arrays.copyOf(predecessors, count))
+					.exceptionally(t -> null) // A failed predecessor still releases its keys
+					.thenApplyAsync(ignored -> run(operation), executor);
+			CompletableFuture<?> released = result.handle((value, t) -> null);
+
+			for (int i = 0; i < held.length; i++) {
+				if (held[i]) {
+					stripeTails[i] = released;
+				}
+			}
+
+			return result;
+		}
+	}
+
+	private int stripeOf(final String key) {
+		int hash = key.hashCode();
+		return Math.floorMod(hash ^ (hash >>> 16), stripeTails.length);
+	}
+
+	private static <T> T run(final Operation<T> operation) {
+		try {
+			return operation.run();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	/**
+	 * Number of operations that had to wait for an earlier operation on an overlapping stripe.
+	 */
+	public long getDeferredCount() {
+		return deferred.sum();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.protos.common.BlockchainInfo;
+import org.hyperledger.fabric.protos.peer.FilteredBlock;
+
+/**
+ * Tracks the ledger height of a Gateway peer from its filtered block events, and notifies waiters once a given block
+ * has been committed by that peer. The starting height is read with the qscc GetChainInfo function, and block events
+ * received from that height onwards, so a waiter for a block committed before tracking started does not need to wait
+ * for a later block.
+ */
+public final class LedgerHeightTracker implements AutoCloseable {
+	private static final long RECONNECT_DELAY_MILLIS = 1000;
+	private static final CompletableFuture<Void> REACHED = CompletableFuture.completedFuture(null);
+
+	private final Network network;
+	private final AtomicLong lastBlockNumber = new AtomicLong(-1);
+	private final ConcurrentSkipListMap<Long, CompletableFuture<Void>> waiters = new ConcurrentSkipListMap<>();
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private volatile CloseableIterator<FilteredBlock> blocks;
+	private volatile boolean closed = false;
+
+	public LedgerHeightTracker(final Network network) {
+		this.network = network;
+	}
+
+	/**
+	 * Read the current ledger height and begin following block events.
+	 */
+	public void start() throws GatewayException {
+		byte[] chainInfo = network.getContract("qscc").evaluateTransaction("GetChainInfo", network.getName());
+		long height;
+		try {
+			height = BlockchainInfo.parseFrom(chainInfo).getHeight();
+		} catch (InvalidProtocolBufferException e) {
+			throw new IllegalStateException("Unable to parse chain info", e);
+		}
+
+		advanceTo(height - 1);
+		blocks = network.newFilteredBlockEventsRequest().startBlock(height).build().getEvents();
+		executor.execute(this::receiveBlocks);
+	}
+
+	/**
+	 * Number of the last block known to be committed by the peer, or -1 if none is known.
+	 */
+	public long getLastBlockNumber() {
+		return lastBlockNumber.get();
+	}
+
+	/**
+	 * Returns a future that completes once the peer has committed the given block.
+	 */
+	public CompletableFuture<Void> whenCommitted(final long blockNumber) {
+		if (blockNumber <= lastBlockNumber.get()) {
+			return REACHED;
+		}
+
+		CompletableFuture<Void> future = waiters.computeIfAbsent(blockNumber, number -> new CompletableFuture<>());
+
+		// The block may have been received while the waiter was being added.
+		completeWaiters();
+		return future;
+	}
+
+	/**
+	 * Record that the peer is known to have committed the given block, for example because it reported the commit
+	 * status of a transaction in that block.
+	 */
+	public void advanceTo(final long blockNumber) {
+		lastBlockNumber.accumulateAndGet(blockNumber, Math::max);
+		completeWaiters();
+	}
+
+	private void completeWaiters() {
+		long last = lastBlockNumber.get();
+		for (Map.Entry<Long, CompletableFuture<Void>> entry = waiters.firstEntry();
+				entry != null && entry.getKey() <= last;
+				entry = waiters.firstEntry()) {
+			waiters.remove(entry.getKey(), entry.getValue());
+			entry.getValue().complete(null);
+		}
+	}
+
+	private void receiveBlocks() {
+		while (!closed) {
+			try {
+				blocks.forEachRemaining(block -> advanceTo(block.getNumber()));
+			} catch (GatewayRuntimeException e) {
+				if (closed) {
+					return;
+				}
+				System.err.println("Block event stream failed, reconnecting: " + e);
+			}
+
+			if (!closed) {
+				reconnect();
+			}
+		}
+	}
+
+	private void reconnect() {
+		try {
+			Thread.sleep(RECONNECT_DELAY_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		blocks = network.newFilteredBlockEventsRequest().startBlock(lastBlockNumber.get() + 1).build().getEvents();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		if (blocks != null) {
+			blocks.close();
+		}
+		executor.shutdownNow();
+
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		IllegalStateException cause = new IllegalStateException("Ledger height tracker closed");
+		waiters.values().forEach(future -> future.completeExceptionally(cause));
+		waiters.clear();
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmitException;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+
+/**
+ * Runs a local model of the basic smart contract's existence checks against an {@link AssetKeyIndex} before
+ * proposals are sent, so that requests certain to fail with ASSET_ALREADY_EXISTS or ASSET_NOT_FOUND can be caught
+ * without a signed round trip to the Gateway.
+ * <p>
+ * In {@link Mode#REJECT} mode, doomed requests are not sent and a {@link RejectedException} is thrown instead. In
+ * {@link Mode#FLAG} mode they are reported and then sent anyway, and the actual outcome is compared with the
+ * prediction. Since the index can lag behind the ledger, FLAG mode is a way to measure how often a prediction would
+ * have been wrong before enabling rejection.
+ */
+public final class Prevalidator {
+	public enum Mode {
+		REJECT,
+		FLAG
+	}
+
+	public enum Prediction {
+		OK,
+		ASSET_ALREADY_EXISTS,
+		ASSET_NOT_FOUND;
+
+		public boolean isDoomed() {
+			return this != OK;
+		}
+	}
+
+	private final Contract contract;
+	private final AssetKeyIndex index;
+	private final Mode mode;
+	private final LongAdder checked = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder flagged = new LongAdder();
+	private final LongAdder flaggedButSucceeded = new LongAdder();
+
+	public Prevalidator(final Contract contract, final AssetKeyIndex index, final Mode mode) {
+		this.contract = contract;
+		this.index = index;
+		this.mode = mode;
+	}
+
+	/**
+	 * Predict the outcome of the existence check made by a basic smart contract function. Functions that make no
+	 * such check are always predicted to succeed.
+	 */
+	public Prediction check(final String name, final String... args) {
+		if (args.length == 0) {
+			return Prediction.OK;
+		}
+
+		switch (name) {
+		case "CreateAsset":
+			return index.exists(args[0]) ? Prediction.ASSET_ALREADY_EXISTS : Prediction.OK;
+		case "ReadAsset":
+		case "UpdateAsset":
+		case "DeleteAsset":
+		case "TransferAsset":
+			return index.exists(args[0]) ? Prediction.OK : Prediction.ASSET_NOT_FOUND;
+		default:
+			return Prediction.OK;
+		}
+	}
+
+	public byte[] evaluateTransaction(final String name, final String... args)
+			throws GatewayException, RejectedException {
+		boolean doomed = prevalidate(name, args);
+
+		byte[] result = contract.evaluateTransaction(name, args);
+		recordSuccess(doomed);
+		return result;
+	}
+
+	/**
+	 * Submit a transaction and wait for it to commit. The writes made by successful CreateAsset and DeleteAsset
+	 * transactions are applied to the index straight away, so that subsequent checks by this client see them
+	 * without waiting for the block event.
+	 */
+	public byte[] submitTransaction(final String name, final String... args)
+			throws EndorseException, SubmitException, CommitStatusException, CommitException, RejectedException {
+		boolean doomed = prevalidate(name, args);
+
+		SubmittedTransaction commit = contract.newProposal(name)
+				.addArguments(args)
+				.build()
+				.endorse()
+				.submitAsync();
+
+		Status status = commit.getStatus();
+		CommitExceptions.checkSuccessful(status);
+
+		recordSuccess(doomed);
+		if (name.equals("CreateAsset") || name.equals("DeleteAsset")) {
+			index.applyCommitted(args[0], name.equals("DeleteAsset"), status.getBlockNumber());
+		}
+
+		return commit.getResult();
+	}
+
+	public String summary() {
+		return String.format("Checked: %d, rejected (round trips avoided): %d, flagged: %d, flagged but succeeded: %d%n",
+				checked.sum(), rejected.sum(), flagged.sum(), flaggedButSucceeded.sum()) + index.summary();
+	}
+
+	private boolean prevalidate(final String name, final String... args) throws RejectedException {
+		checked.increment();
+		Prediction prediction = check(name, args);
+		if (!prediction.isDoomed()) {
+			return false;
+		}
+
+		if (mode == Mode.REJECT) {
+			rejected.increment();
+			throw new RejectedException(name, args[0], prediction);
+		}
+
+		flagged.increment();
+		System.out.println("*** Pre-validation predicts " + name + " of " + args[0] + " will fail with " + prediction);
+		return true;
+	}
+
+	private void recordSuccess(final boolean doomed) {
+		if (doomed) {
+			flaggedButSucceeded.increment();
+		}
+	}
+
+	/**
+	 * Thrown in place of sending a proposal that the local model predicts will fail.
+	 */
+	public static final class RejectedException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		private final Prediction prediction;
+
+		RejectedException(final String name, final String key, final Prediction prediction) {
+			super(name + " of " + key + " rejected locally: " + prediction);
+			this.prediction = prediction;
+		}
+
+		public Prediction getPrediction() {
+			return prediction;
+		}
+	}
+}
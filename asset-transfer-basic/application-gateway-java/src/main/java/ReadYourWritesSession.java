@@ -0,0 +1,162 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmitException;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+
+/**
+ * Gives a client read-your-writes consistency across one or more Gateway peers. The session remembers the highest
+ * block number in which one of its transactions committed, and only evaluates transactions using a Gateway whose
+ * peer has committed at least that block. If no Gateway peer has yet reached that block, the evaluate waits until one
+ * does, as reported by its block events, rather than the client polling with repeated evaluates.
+ * <p>
+ * Each Gateway peer evaluates using its own ledger, or that of another peer in its organization with at least the
+ * same ledger height.
+ */
+public final class ReadYourWritesSession {
+	private final List<Replica> replicas;
+	private final Duration maxWait;
+	private final AtomicLong minBlockNumber = new AtomicLong(-1);
+	private final AtomicInteger nextReplica = new AtomicInteger();
+	private final LongAdder evaluations = new LongAdder();
+	private final LongAdder waits = new LongAdder();
+
+	/**
+	 * The same contract obtained from a Gateway connected to a particular peer, and the ledger height of that peer.
+	 */
+	public static final class Replica {
+		private final Contract contract;
+		private final LedgerHeightTracker ledgerHeight;
+
+		public Replica(final Contract contract, final LedgerHeightTracker ledgerHeight) {
+			this.contract = contract;
+			this.ledgerHeight = ledgerHeight;
+		}
+	}
+
+	/**
+	 * @param replicas The same contract from Gateway connections to one or more peers.
+	 * @param maxWait Maximum time an evaluate waits for a Gateway peer to reach the session's block number.
+	 */
+	public ReadYourWritesSession(final List<Replica> replicas, final Duration maxWait) {
+		if (replicas.isEmpty()) {
+			throw new IllegalArgumentException("At least one replica is required");
+		}
+
+		this.replicas = List.copyOf(replicas);
+		this.maxWait = maxWait;
+	}
+
+	/**
+	 * Block number that evaluates in this session must observe, or -1 if no writes have been recorded.
+	 */
+	public long getMinBlockNumber() {
+		return minBlockNumber.get();
+	}
+
+	/**
+	 * Record a successful commit of a transaction submitted outside the session, so that subsequent evaluates observe
+	 * its writes.
+	 */
+	public void recordCommit(final Status status) {
+		if (status.isSuccessful()) {
+			minBlockNumber.accumulateAndGet(status.getBlockNumber(), Math::max);
+		}
+	}
+
+	/**
+	 * Submit a transaction and wait for it to commit, recording its block number in the session.
+	 */
+	public byte[] submitTransaction(final String name, final String... args)
+			throws EndorseException, SubmitException, CommitStatusException, CommitException {
+		Replica replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+		SubmittedTransaction commit = replica.contract.newProposal(name)
+				.addArguments(args)
+				.build()
+				.endorse()
+				.submitAsync();
+
+		Status status = commit.getStatus();
+		CommitExceptions.checkSuccessful(status);
+
+		// The Gateway peer only reports commit status once it has committed the block itself.
+		replica.ledgerHeight.advanceTo(status.getBlockNumber());
+		recordCommit(status);
+
+		return commit.getResult();
+	}
+
+	/**
+	 * Evaluate a transaction using a Gateway peer that has committed all of the session's writes, waiting for one to
+	 * do so if necessary.
+	 *
+	 * @throws TimeoutException if no Gateway peer reaches the required block within the maximum wait.
+	 */
+	public byte[] evaluateTransaction(final String name, final String... args)
+			throws GatewayException, TimeoutException {
+		evaluations.increment();
+		long required = minBlockNumber.get();
+
+		Replica replica = findReplica(required);
+		if (replica == null) {
+			waits.increment();
+			awaitAnyReplica(required);
+			replica = findReplica(required);
+		}
+
+		return replica.contract.evaluateTransaction(name, args);
+	}
+
+	public String summary() {
+		return String.format("Evaluations: %d, waited for ledger height: %d, session block: %d%n",
+				evaluations.sum(), waits.sum(), minBlockNumber.get());
+	}
+
+	private Replica findReplica(final long required) {
+		int start = nextReplica.getAndIncrement();
+		for (int i = 0; i < replicas.size(); i++) {
+			Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+			if (replica.ledgerHeight.getLastBlockNumber() >= required) {
+				return replica;
+			}
+		}
+		return null;
+	}
+
+	private void awaitAnyReplica(final long required) throws TimeoutException {
+		CompletableFuture<?>[] reached = replicas.stream()
+				.map(replica -> replica.ledgerHeight.whenCommitted(required))
+				.toArray(CompletableFuture[]::new);
+
+		try {
+			CompletableFuture.anyOf(reached).get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			throw new TimeoutException("No Gateway peer reached block " + required + " within " + maxWait);
+		} catch (ExecutionException e) {
+			throw new CompletionException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CompletionException(e);
+		}
+	}
+}
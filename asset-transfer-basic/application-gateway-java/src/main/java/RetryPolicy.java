@@ -0,0 +1,71 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+
+/**
+ * Decides whether a transaction that failed to commit is worth submitting again, and how long to wait before doing
+ * so. Only validation codes caused by concurrent updates to the same keys are retriable; re-endorsing a fresh proposal
+ * against the latest ledger state is likely to succeed for those, while any other failure would simply repeat.
+ */
+public final class RetryPolicy {
+	private static final Set<TxValidationCode> RETRIABLE_CODES = EnumSet.of(
+			TxValidationCode.MVCC_READ_CONFLICT,
+			TxValidationCode.PHANTOM_READ_CONFLICT);
+
+	private final int maxAttempts;
+	private final Duration baseDelay;
+	private final Duration maxDelay;
+
+	/**
+	 * @param maxAttempts Total number of attempts allowed for one logical operation, including the first.
+	 * @param baseDelay Backoff before the second attempt; doubled for each subsequent attempt.
+	 * @param maxDelay Upper bound on the backoff between any two attempts.
+	 */
+	public RetryPolicy(final int maxAttempts, final Duration baseDelay, final Duration maxDelay) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+		}
+		if (baseDelay.isNegative() || maxDelay.compareTo(baseDelay) < 0) {
+			throw new IllegalArgumentException("Invalid backoff range: " + baseDelay + " to " + maxDelay);
+		}
+
+		this.maxAttempts = maxAttempts;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public boolean isRetriable(final TxValidationCode code) {
+		return RETRIABLE_CODES.contains(code);
+	}
+
+	/**
+	 * Backoff to apply after the given (1-based) attempt failed. The exponential delay is capped at the configured
+	 * maximum and then jittered over its upper half, so that clients which conflicted with each other do not retry in
+	 * lockstep and conflict again.
+	 */
+	public Duration backoff(final int attempt) {
+		long capMillis = maxDelay.toMillis();
+		long delayMillis = baseDelay.toMillis();
+		for (int i = 1; i < attempt && delayMillis < capMillis; i++) {
+			delayMillis *= 2;
+		}
+		delayMillis = Math.min(delayMillis, capMillis);
+
+		long half = delayMillis / 2;
+		long jittered = half + ThreadLocalRandom.current().nextLong(delayMillis - half + 1);
+		return Duration.ofMillis(jittered);
+	}
+}
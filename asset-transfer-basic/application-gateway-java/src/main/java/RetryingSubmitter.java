@@ -0,0 +1,74 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.SubmitException;
+
+/**
+ * Submits transactions, transparently resubmitting those that fail to commit because of a conflicting concurrent
+ * update. Each retry endorses a new proposal, with a new transaction ID, so that it is simulated against the latest
+ * committed ledger state rather than the state that caused the conflict.
+ * <p>
+ * The first transaction argument is taken to be the key the transaction operates on, which holds for the asset
+ * functions of the basic smart contract, and is used to attribute conflicts to key prefixes.
+ */
+public final class RetryingSubmitter {
+	private final Contract contract;
+	private final RetryPolicy policy;
+	private final ConflictMetrics metrics;
+
+	public RetryingSubmitter(final Contract contract, final RetryPolicy policy, final ConflictMetrics metrics) {
+		this.contract = contract;
+		this.policy = policy;
+		this.metrics = metrics;
+	}
+
+	public ConflictMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Equivalent to {@link Contract#submitTransaction(String, String...)}, except that retriable commit failures are
+	 * retried with backoff until the policy's attempt budget is used up. The last failure is then thrown to the
+	 * caller.
+	 */
+	public byte[] submitTransaction(final String name, final String... args)
+			throws EndorseException, SubmitException, CommitStatusException, CommitException {
+		String key = args.length > 0 ? args[0] : null;
+
+		for (int attempt = 1; ; attempt++) {
+			try {
+				byte[] result = contract.newProposal(name)
+						.addArguments(args)
+						.build()
+						.endorse()
+						.submit();
+				metrics.recordAttempt(name, key, false);
+				metrics.recordCompleted(attempt);
+				return result;
+			} catch (CommitException e) {
+				boolean retriable = policy.isRetriable(e.getCode());
+				metrics.recordAttempt(name, key, retriable);
+
+				if (!retriable || attempt >= policy.getMaxAttempts()) {
+					metrics.recordAbandoned(attempt);
+					throw e;
+				}
+
+				try {
+					Thread.sleep(policy.backoff(attempt).toMillis());
+				} catch (InterruptedException interrupt) {
+					Thread.currentThread().interrupt();
+					metrics.recordAbandoned(attempt);
+					throw e;
+				}
+			}
+		}
+	}
+}
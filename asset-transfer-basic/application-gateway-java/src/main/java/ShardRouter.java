@@ -0,0 +1,173 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.SubmitException;
+
+/**
+ * Routes asset operations across a set of shards, each a smart contract deployed on a channel, so that throughput is
+ * not limited to the ordering capacity of a single channel.
+ * <p>
+ * Asset IDs are mapped to shards by consistent hashing. Each shard owns many points on a hash ring, so keys are spread
+ * evenly and adding a shard moves only about 1/N of the keys. Single asset operations go to the owning shard, while
+ * reads across all assets are scattered to every shard in parallel and the results gathered.
+ */
+public final class ShardRouter implements AutoCloseable {
+	private static final int POINTS_PER_SHARD = 128;
+
+	private final List<Shard> shards;
+	private final TreeMap<Long, Shard> ring = new TreeMap<>();
+	private final ExecutorService executor;
+
+	/**
+	 * A smart contract on a channel, forming one shard.
+	 */
+	public static final class Shard {
+		private final String channelName;
+		private final String chaincodeName;
+		private final Contract contract;
+
+		public Shard(final String channelName, final String chaincodeName, final Contract contract) {
+			this.channelName = channelName;
+			this.chaincodeName = chaincodeName;
+			this.contract = contract;
+		}
+
+		public String getName() {
+			return channelName + "/" + chaincodeName;
+		}
+
+		public Contract getContract() {
+			return contract;
+		}
+	}
+
+	/**
+	 * Create a router from shard specifications of the form {@code <channel>/<chaincode>}.
+	 */
+	public static ShardRouter forShards(final Gateway gateway, final List<String> shardSpecs) {
+		List<Shard> shards = new ArrayList<>(shardSpecs.size());
+		for (String spec : shardSpecs) {
+			String[] parts = spec.split("/", 2);
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("Shard must be specified as <channel>/<chaincode>: " + spec);
+			}
+			shards.add(new Shard(parts[0], parts[1], gateway.getNetwork(parts[0]).getContract(parts[1])));
+		}
+		return new ShardRouter(shards);
+	}
+
+	public ShardRouter(final List<Shard> shards) {
+		if (shards.isEmpty()) {
+			throw new IllegalArgumentException("At least one shard is required");
+		}
+
+		this.shards = List.copyOf(shards);
+		for (Shard shard : shards) {
+			for (int i = 0; i < POINTS_PER_SHARD; i++) {
+				ring.put(hash(shard.getName() + "#" + i), shard);
+			}
+		}
+		this.executor = Executors.newFixedThreadPool(shards.size());
+	}
+
+	public Shard shardFor(final String assetId) {
+		Map.Entry<Long, Shard> entry = ring.ceilingEntry(hash(assetId));
+		return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+	}
+
+	/**
+	 * Submit a transaction to the shard owning the asset, which must be the first transaction argument.
+	 */
+	public byte[] submitTransaction(final String name, final String assetId, final String... args)
+			throws EndorseException, SubmitException, CommitStatusException, CommitException {
+		return shardFor(assetId).contract.submitTransaction(name, prepend(assetId, args));
+	}
+
+	/**
+	 * Evaluate a transaction on the shard owning the asset, which must be the first transaction argument.
+	 */
+	public byte[] evaluateTransaction(final String name, final String assetId, final String... args)
+			throws GatewayException {
+		return shardFor(assetId).contract.evaluateTransaction(name, prepend(assetId, args));
+	}
+
+	/**
+	 * Evaluate {@code GetAllAssets} on every shard in parallel, returning the combined assets ordered by ID.
+	 */
+	public List<Asset> getAllAssets() throws GatewayException {
+		List<CompletableFuture<byte[]>> results = new ArrayList<>(shards.size());
+		for (Shard shard : shards) {
+			results.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return shard.contract.evaluateTransaction("GetAllAssets");
+				} catch (GatewayException e) {
+					throw new CompletionException(e);
+				}
+			}, executor));
+		}
+
+		List<Asset> assets = new ArrayList<>();
+		for (CompletableFuture<byte[]> result : results) {
+			try (AssetReader reader = new AssetReader(result.join())) {
+				reader.forEachRemaining(assets::add);
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof GatewayException) {
+					throw (GatewayException) e.getCause();
+				}
+				throw e;
+			}
+		}
+
+		assets.sort(Comparator.comparing(Asset::getId));
+		return assets;
+	}
+
+	private static String[] prepend(final String first, final String... rest) {
+		String[] args = new String[rest.length + 1];
+		args[0] = first;
+		System.arraycopy(rest, 0, args, 1, rest.length);
+		return args;
+	}
+
+	/**
+	 * 64-bit FNV-1a hash with a final avalanche step, so that similar keys such as sequential asset IDs land on
+	 * unrelated points of the ring.
+	 */
+	private static long hash(final String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+}
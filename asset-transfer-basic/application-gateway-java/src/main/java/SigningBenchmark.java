@@ -0,0 +1,65 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.hyperledger.fabric.client.identity.Signer;
+import org.hyperledger.fabric.client.identity.Signers;
+
+/**
+ * Measures ECDSA P-256 signatures per second through a {@link SigningPool} as the number of signing threads grows,
+ * up to the number of available cores. Run with {@code ./gradlew signingBenchmark}.
+ */
+public final class SigningBenchmark {
+	private static final int BATCH_SIZE = 10_000;
+	private static final int WARMUP_BATCHES = 2;
+	private static final int MEASURED_BATCHES = 5;
+
+	private SigningBenchmark() {
+		// Private constructor to prevent instantiation
+	}
+
+	public static void main(final String[] args) throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+		generator.initialize(new ECGenParameterSpec("secp256r1"));
+		PrivateKey privateKey = generator.generateKeyPair().getPrivate();
+		Signer signer = Signers.newPrivateKeySigner(privateKey);
+
+		List<byte[]> digests = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			byte[] digest = new byte[32];
+			ThreadLocalRandom.current().nextBytes(digest);
+			digests.add(digest);
+		}
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println("threads, signatures/second");
+		for (int threads = 1; threads <= cores; threads = nextThreadCount(threads, cores)) {
+			try (SigningPool pool = new SigningPool(signer, threads)) {
+				for (int i = 0; i < WARMUP_BATCHES; i++) {
+					pool.signAll(digests);
+				}
+
+				long start = System.nanoTime();
+				for (int i = 0; i < MEASURED_BATCHES; i++) {
+					pool.signAll(digests);
+				}
+				double seconds = (System.nanoTime() - start) / 1e9;
+
+				System.out.printf("%d, %.0f%n", threads, MEASURED_BATCHES * BATCH_SIZE / seconds);
+			}
+		}
+	}
+
+	private static int nextThreadCount(final int threads, final int cores) {
+		return threads < cores && threads * 2 > cores ? cores : threads * 2;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.client.Commit;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.Proposal;
+import org.hyperledger.fabric.client.Transaction;
+import org.hyperledger.fabric.client.identity.Signer;
+
+/**
+ * Signs proposal, transaction and commit digests on a pool of threads, so that signing throughput scales with the
+ * available cores rather than being limited to the threads that create transactions.
+ * <p>
+ * This is intended for use with a Gateway connected without a signer, whose proposals and transactions are built
+ * unsigned. Their digests are signed here and the signed messages recreated using
+ * {@link Gateway#newSignedProposal(byte[], byte[])} and friends. Results are returned in request order regardless of
+ * which signature completes first. The supplied signer must be safe for concurrent use, as is the one returned by
+ * {@code Signers.newPrivateKeySigner}.
+ */
+public final class SigningPool implements AutoCloseable {
+	private final Signer signer;
+	private final ExecutorService executor;
+
+	public SigningPool(final Signer signer) {
+		this(signer, Runtime.getRuntime().availableProcessors());
+	}
+
+	public SigningPool(final Signer signer, final int threads) {
+		this.signer = signer;
+		this.executor = Executors.newFixedThreadPool(threads);
+	}
+
+	public CompletableFuture<byte[]> sign(final byte[] digest) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return signer.sign(digest);
+			} catch (GeneralSecurityException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Sign a batch of digests in parallel, returning the signatures in the same order as the digests.
+	 */
+	public List<byte[]> signAll(final List<byte[]> digests) throws GeneralSecurityException {
+		List<CompletableFuture<byte[]>> futures = new ArrayList<>(digests.size());
+		for (byte[] digest : digests) {
+			futures.add(sign(digest));
+		}
+
+		List<byte[]> signatures = new ArrayList<>(futures.size());
+		for (CompletableFuture<byte[]> future : futures) {
+			signatures.add(join(future));
+		}
+		return signatures;
+	}
+
+	public CompletableFuture<Proposal> signProposal(final Gateway gateway, final Proposal unsignedProposal) {
+		return sign(unsignedProposal.getDigest())
+				.thenApply(signature -> gateway.newSignedProposal(unsignedProposal.getBytes(), signature));
+	}
+
+	public CompletableFuture<Transaction> signTransaction(final Gateway gateway, final Transaction unsignedTransaction) {
+		return sign(unsignedTransaction.getDigest())
+				.thenApply(signature -> gateway.newSignedTransaction(unsignedTransaction.getBytes(), signature));
+	}
+
+	public CompletableFuture<Commit> signCommit(final Gateway gateway, final Commit unsignedCommit) {
+		return sign(unsignedCommit.getDigest())
+				.thenApply(signature -> gateway.newSignedCommit(unsignedCommit.getBytes(), signature));
+	}
+
+	private static byte[] join(final CompletableFuture<byte[]> future) throws GeneralSecurityException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof GeneralSecurityException) {
+				throw (GeneralSecurityException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.grpc.ManagedChannel;
+import org.hyperledger.fabric.client.CallOption;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmitException;
+import org.hyperledger.fabric.client.Transaction;
+import org.hyperledger.fabric.client.identity.Signer;
+
+/**
+ * Submits the endorsed transactions in a {@link TransactionBundle} to the orderer in parallel, and records the commit
+ * outcome of each transaction. The transactions are already signed, so the Gateway is connected without a signer.
+ * <p>
+ * Commit outcomes are observed through a single {@link CommitTracker} block event stream, whose requests are signed
+ * with the client's signing key. They are appended to an outcome file next to the bundle, one line per transaction ID
+ * with its validation code and block number. A restarted submission skips transactions that already have an outcome.
+ * A transaction resubmitted after it was committed, but before its outcome was recorded, is reported as
+ * DUPLICATE_TXID.
+ * <p>
+ * Usage: {@code ./gradlew submitBundle --args="<bundle file> [max in flight]"}
+ */
+public final class SubmitBundle {
+	private static final String channelName = "mychannel";
+
+	private static final int DEFAULT_MAX_IN_FLIGHT = 200;
+	private static final int RETAINED_BLOCKS = 100;
+	private static final long COMMIT_TIMEOUT_MINUTES = 5;
+
+	private final Gateway gateway;
+	private final Network network;
+	private final Signer signer;
+	private final Path outcomesPath;
+	private final int maxInFlight;
+	private final Semaphore inFlight;
+	private final ExecutorService submitters;
+	private final Map<String, Long> outcomeCounts = new TreeMap<>();
+	private final LongAdder failed = new LongAdder();
+	private BufferedWriter outcomes;
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: SubmitBundle <bundle file> [max in flight]");
+			System.exit(1);
+		}
+
+		Path bundlePath = Paths.get(args[0]);
+		int maxInFlight = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_IN_FLIGHT;
+
+		ManagedChannel channel = Connections.newGrpcConnection();
+		Gateway.Builder builder = Gateway.newInstance()
+				.identity(Connections.newIdentity())
+				.connection(channel)
+				.evaluateOptions(CallOption.deadlineAfter(5, TimeUnit.SECONDS))
+				.submitOptions(CallOption.deadlineAfter(5, TimeUnit.SECONDS));
+
+		try (Gateway gateway = builder.connect()) {
+			new SubmitBundle(gateway, Connections.newSigner(), bundlePath, maxInFlight).run(bundlePath);
+		} finally {
+			channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * @param gateway Gateway connected without a signer.
+	 * @param signer Signer for the block event requests used to observe commits.
+	 */
+	public SubmitBundle(final Gateway gateway, final Signer signer, final Path bundlePath, final int maxInFlight) {
+		this.gateway = gateway;
+		this.network = gateway.getNetwork(channelName);
+		this.signer = signer;
+		this.outcomesPath = Paths.get(bundlePath + ".outcomes");
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.submitters = Executors.newFixedThreadPool(maxInFlight);
+	}
+
+	public void run(final Path bundlePath) throws IOException, InterruptedException, GatewayException {
+		Set<String> completed = readCompleted();
+		long start = System.nanoTime();
+		long skipped = 0;
+
+		try (TransactionBundle.Reader bundle = new TransactionBundle.Reader(bundlePath);
+				CommitTracker tracker = new CommitTracker(gateway, network, signer, RETAINED_BLOCKS);
+				BufferedWriter writer = Files.newBufferedWriter(outcomesPath, StandardCharsets.UTF_8,
+						StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			outcomes = writer;
+
+			try {
+				for (TransactionBundle.Entry entry = bundle.next(); entry != null; entry = bundle.next()) {
+					if (completed.contains(entry.getTransactionId())) {
+						skipped++;
+						continue;
+					}
+
+					TransactionBundle.Entry submission = entry;
+					inFlight.acquire();
+					submitters.execute(() -> submit(tracker, submission));
+				}
+			} finally {
+				// Wait for every submitted transaction to commit before the tracker is closed.
+				if (!inFlight.tryAcquire(maxInFlight, COMMIT_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+					System.err.println("Timed out waiting for " + (maxInFlight - inFlight.availablePermits())
+							+ " transactions to commit");
+				}
+				submitters.shutdown();
+				submitters.awaitTermination(1, TimeUnit.MINUTES);
+			}
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("Submitted bundle %s in %.1fs: %d already complete, %d failed to submit%n",
+				bundlePath, seconds, skipped, failed.sum());
+		synchronized (outcomeCounts) {
+			outcomeCounts.forEach((code, count) -> System.out.println("- " + code + ": " + count));
+		}
+	}
+
+	private void submit(final CommitTracker tracker, final TransactionBundle.Entry entry) {
+		try {
+			Transaction transaction = gateway.newSignedTransaction(entry.getTransactionBytes(), entry.getSignature());
+			tracker.submit(transaction).whenComplete((status, e) -> {
+				try {
+					if (e != null) {
+						failed.increment();
+						System.err.println("No commit status for " + entry.getTransactionId() + ": " + e);
+					} else {
+						recordOutcome(status);
+					}
+				} finally {
+					inFlight.release();
+				}
+			});
+		} catch (SubmitException | RuntimeException e) {
+			failed.increment();
+			System.err.println("Failed to submit " + entry.getTransactionId() + ": " + e);
+			inFlight.release();
+		}
+	}
+
+	private void recordOutcome(final Status status) {
+		synchronized (outcomeCounts) {
+			outcomeCounts.merge(status.getCode().name(), 1L, Long::sum);
+
+			try {
+				outcomes.write(status.getTransactionId() + " " + status.getCode().name() + " " + status.getBlockNumber());
+				outcomes.newLine();
+				outcomes.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private Set<String> readCompleted() throws IOException {
+		Set<String> completed = new HashSet<>();
+		if (Files.exists(outcomesPath)) {
+			for (String line : Files.readAllLines(outcomesPath, StandardCharsets.UTF_8)) {
+				int end = line.indexOf(' ');
+				if (end > 0) {
+					completed.add(line.substring(0, end));
+				}
+			}
+		}
+		return completed;
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * File format for endorsed transactions that are to be submitted to the orderer later, possibly by another process.
+ * Each entry holds the transaction ID, the serialized transaction from
+ * {@link org.hyperledger.fabric.client.Transaction#getBytes()} and the signature of its digest, so that the submitting
+ * process can recreate the signed transaction with
+ * {@link org.hyperledger.fabric.client.Gateway#newSignedTransaction(byte[], byte[])} without access to the signing key.
+ * <p>
+ * The bundle is a GZIP-compressed stream: a header holding a magic number and format version, then one record per
+ * transaction, each with a CRC32 checksum, and finally an end marker with the record count. A bundle is written to a
+ * temporary file and renamed into place when committed, so a bundle file is never incomplete.
+ */
+public final class TransactionBundle {
+	private static final int MAGIC = 0x46545842; // "FTXB"
+	private static final byte VERSION = 1;
+	private static final byte RECORD = 1;
+	private static final byte END = 0;
+
+	private TransactionBundle() {
+		// Private constructor to prevent instantiation
+	}
+
+	public static final class Entry {
+		private final String transactionId;
+		private final byte[] transactionBytes;
+		private final byte[] signature;
+
+		public Entry(final String transactionId, final byte[] transactionBytes, final byte[] signature) {
+			this.transactionId = transactionId;
+			this.transactionBytes = transactionBytes;
+			this.signature = signature;
+		}
+
+		public String getTransactionId() {
+			return transactionId;
+		}
+
+		public byte[] getTransactionBytes() {
+			return transactionBytes;
+		}
+
+		public byte[] getSignature() {
+			return signature;
+		}
+	}
+
+	/**
+	 * Writes entries to a new bundle. Entries may be added from multiple threads. The bundle is only created once
+	 * {@link #commit()} is called; closing the writer without committing discards the entries written.
+	 */
+	public static final class Writer implements AutoCloseable {
+		private final Path path;
+		private final Path tempPath;
+		private final DataOutputStream out;
+		private long count = 0;
+		private boolean closed = false;
+
+		public Writer(final Path path) throws IOException {
+			this.path = path;
+			this.tempPath = Paths.get(path + ".tmp");
+			this.out = new DataOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tempPath))));
+
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+		}
+
+		public synchronized void add(final Entry entry) throws IOException {
+			out.writeByte(RECORD);
+			out.writeUTF(entry.getTransactionId());
+			writeBytes(entry.getTransactionBytes());
+			writeBytes(entry.getSignature());
+			out.writeInt(checksum(entry));
+			count++;
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		private void writeBytes(final byte[] bytes) throws IOException {
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		/**
+		 * Complete the bundle and rename it into place.
+		 */
+		public synchronized void commit() throws IOException {
+			if (closed) {
+				throw new IllegalStateException("Bundle writer is closed");
+			}
+
+			closed = true;
+			out.writeByte(END);
+			out.writeLong(count);
+			out.close();
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		/**
+		 * Discard the bundle if it has not been committed.
+		 */
+		@Override
+		public synchronized void close() throws IOException {
+			if (closed) {
+				return;
+			}
+
+			closed = true;
+			try {
+				out.close();
+			} finally {
+				Files.deleteIfExists(tempPath);
+			}
+		}
+	}
+
+	/**
+	 * Reads the entries of a bundle in the order they were written.
+	 */
+	public static final class Reader implements AutoCloseable {
+		private final DataInputStream in;
+		private long count = 0;
+
+		public Reader(final Path path) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))));
+
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a transaction bundle: " + path);
+			}
+			byte version = in.readByte();
+			if (version != VERSION) {
+				throw new IOException("Unsupported transaction bundle version " + version + ": " + path);
+			}
+		}
+
+		/**
+		 * Returns the next entry, or {@code null} at the end of the bundle.
+		 */
+		public Entry next() throws IOException {
+			try {
+				if (in.readByte() == END) {
+					long expected = in.readLong();
+					if (expected != count) {
+						throw new IOException("Bundle ended after " + count + " of " + expected + " entries");
+					}
+					return null;
+				}
+
+				Entry entry = new Entry(in.readUTF(), readBytes(), readBytes());
+				if (in.readInt() != checksum(entry)) {
+					throw new IOException("Checksum mismatch for transaction " + entry.getTransactionId());
+				}
+
+				count++;
+				return entry;
+			} catch (EOFException e) {
+				throw new IOException("Bundle truncated after " + count + " entries", e);
+			}
+		}
+
+		private byte[] readBytes() throws IOException {
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return bytes;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	private static int checksum(final Entry entry) {
+		CRC32 crc = new CRC32();
+		crc.update(entry.getTransactionBytes());
+		crc.update(entry.getSignature());
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of transactions that have been accepted by the application but not yet
+ * resolved. An intent record is written, and forced to disk, before a transaction is endorsed. A submitted record,
+ * holding the signed transaction envelope, is forced before the transaction is sent to the orderer. An outcome record
+ * is written once the transaction has committed or been rejected.
+ * <p>
+ * After a restart, {@link #getUnresolved()} returns the entries with no outcome. An entry that was never submitted can
+ * safely be executed again as a new transaction, recorded with {@link #recordRetry(Entry)}. An entry that may have
+ * reached the orderer is resubmitted using the identical signed envelope, and so the same transaction ID, so it cannot
+ * be committed twice.
+ * <p>
+ * Outcome records are not forced; if one is lost, replaying the entry finds the transaction already committed. Once
+ * no entries are unresolved, the journal starts again from the beginning of the file. Each restart increments an
+ * epoch number stored in the header and every record, so that stale records beyond the end of the current journal
+ * are ignored.
+ */
+public final class TransactionJournal implements AutoCloseable {
+	private static final int MAGIC = 0x46544a31; // "FTJ1"
+	private static final int HEADER_SIZE = 8;
+	private static final int RECORD_OVERHEAD = 4 + 4 + 1 + 8 + 4; // length, epoch, type, sequence, checksum
+	private static final long INITIAL_CAPACITY = 16L * 1024 * 1024;
+
+	private static final byte INTENT = 1;
+	private static final byte SUBMITTED = 2;
+	private static final byte OUTCOME = 3;
+
+	/** Outcome code for a transaction that was rejected before being submitted to the orderer. */
+	public static final int NOT_SUBMITTED = -1;
+
+	private static final long NO_SEQUENCE = -1;
+
+	private final FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int epoch;
+	private long nextSequence = 0;
+	private final Map<Long, Entry> unresolved = new LinkedHashMap<>();
+
+	/**
+	 * A journaled transaction with no recorded outcome.
+	 */
+	public static final class Entry {
+		private final long sequence;
+		private final String function;
+		private final List<String> args;
+		private String transactionId;
+		private byte[] transactionBytes;
+		private byte[] signature;
+
+		private Entry(final long sequence, final String function, final List<String> args) {
+			this.sequence = sequence;
+			this.function = function;
+			this.args = args;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public String getFunction() {
+			return function;
+		}
+
+		public List<String> getArgs() {
+			return args;
+		}
+
+		/**
+		 * Whether the signed transaction may have been sent to the orderer. If so, only the identical envelope may be
+		 * submitted again.
+		 */
+		public boolean isSubmitted() {
+			return transactionId != null;
+		}
+
+		public String getTransactionId() {
+			return transactionId;
+		}
+
+		public byte[] getTransactionBytes() {
+			return transactionBytes;
+		}
+
+		public byte[] getSignature() {
+			return signature;
+		}
+	}
+
+	public TransactionJournal(final Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, channel.size()));
+
+		if (buffer.getInt(0) == MAGIC) {
+			epoch = buffer.getInt(4);
+			recover();
+		} else {
+			epoch = 0;
+			buffer.putInt(0, MAGIC);
+			buffer.position(HEADER_SIZE);
+		}
+
+		if (unresolved.isEmpty()) {
+			restart();
+		}
+	}
+
+	private void recover() {
+		buffer.position(HEADER_SIZE);
+		while (buffer.remaining() >= RECORD_OVERHEAD) {
+			int start = buffer.position();
+			int length = buffer.getInt(start);
+			if (length < 0 || length > buffer.limit() - start - RECORD_OVERHEAD || buffer.getInt(start + 4) != epoch) {
+				break;
+			}
+
+			ByteBuffer record = buffer.duplicate();
+			record.position(start + 4).limit(start + 4 + 4 + 1 + 8 + length);
+			CRC32 crc = new CRC32();
+			crc.update(record.duplicate());
+			if ((int) crc.getValue() != buffer.getInt(start + RECORD_OVERHEAD - 4 + length)) {
+				break; // Torn write at the end of the journal
+			}
+
+			record.getInt(); // epoch
+			byte type = record.get();
+			long sequence = record.getLong();
+			apply(type, sequence, record);
+
+			nextSequence = Math.max(nextSequence, sequence + 1);
+			buffer.position(start + RECORD_OVERHEAD + length);
+		}
+	}
+
+	private void apply(final byte type, final long sequence, final ByteBuffer payload) {
+		switch (type) {
+		case INTENT:
+			unresolved.remove(payload.getLong()); // Entry replaced by this one, if any
+			String function = readString(payload);
+			int argCount = payload.getInt();
+			List<String> args = new ArrayList<>(argCount);
+			for (int i = 0; i < argCount; i++) {
+				args.add(readString(payload));
+			}
+			unresolved.put(sequence, new Entry(sequence, function, args));
+			break;
+		case SUBMITTED:
+			Entry entry = unresolved.get(sequence);
+			if (entry != null) {
+				entry.transactionId = readString(payload);
+				entry.transactionBytes = readBytes(payload);
+				entry.signature = readBytes(payload);
+			}
+			break;
+		case OUTCOME:
+			unresolved.remove(sequence);
+			break;
+		default:
+			throw new IllegalStateException("Unknown journal record type: " + type);
+		}
+	}
+
+	public synchronized Collection<Entry> getUnresolved() {
+		return new ArrayList<>(unresolved.values());
+	}
+
+	/**
+	 * Durably record that a transaction is about to be executed, returning its journal sequence number.
+	 */
+	public synchronized long recordIntent(final String function, final String... args) throws IOException {
+		return recordIntent(NO_SEQUENCE, function, args);
+	}
+
+	/**
+	 * Durably record that an entry which was never submitted is about to be executed again as a new transaction,
+	 * returning the journal sequence number of the new entry. The same record resolves the replaced entry, so after a
+	 * restart exactly one of the two is unresolved.
+	 */
+	public synchronized long recordRetry(final Entry replaced) throws IOException {
+		if (replaced.isSubmitted()) {
+			throw new IllegalArgumentException("Entry " + replaced.getSequence() + " may have reached the orderer");
+		}
+		return recordIntent(replaced.getSequence(), replaced.getFunction(), replaced.getArgs().toArray(new String[0]));
+	}
+
+	private long recordIntent(final long replaces, final String function, final String... args) throws IOException {
+		long sequence = nextSequence++;
+
+		byte[][] encodedArgs = new byte[args.length][];
+		int length = 8 + 4 + function.getBytes(StandardCharsets.UTF_8).length + 4;
+		for (int i = 0; i < args.length; i++) {
+			encodedArgs[i] = args[i].getBytes(StandardCharsets.UTF_8);
+			length += 4 + encodedArgs[i].length;
+		}
+
+		ByteBuffer record = startRecord(INTENT, sequence, length);
+		record.putLong(replaces);
+		writeBytes(record, function.getBytes(StandardCharsets.UTF_8));
+		record.putInt(args.length);
+		for (byte[] arg : encodedArgs) {
+			writeBytes(record, arg);
+		}
+		finishRecord(record, true);
+
+		unresolved.remove(replaces);
+		unresolved.put(sequence, new Entry(sequence, function, List.of(args)));
+		return sequence;
+	}
+
+	/**
+	 * Durably record the signed transaction envelope. This must complete before the transaction is submitted.
+	 */
+	public synchronized void recordSubmitted(final long sequence, final String transactionId,
+			final byte[] transactionBytes, final byte[] signature) throws IOException {
+		byte[] id = transactionId.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = startRecord(SUBMITTED, sequence, 12 + id.length + transactionBytes.length + signature.length);
+		writeBytes(record, id);
+		writeBytes(record, transactionBytes);
+		writeBytes(record, signature);
+		finishRecord(record, true);
+
+		Entry entry = unresolved.get(sequence);
+		if (entry != null) {
+			entry.transactionId = transactionId;
+			entry.transactionBytes = transactionBytes;
+			entry.signature = signature;
+		}
+	}
+
+	/**
+	 * Record the outcome of a transaction, which is then no longer replayed.
+	 *
+	 * @param code Transaction validation code number, or {@link #NOT_SUBMITTED}.
+	 */
+	public synchronized void recordOutcome(final long sequence, final int code, final long blockNumber)
+			throws IOException {
+		ByteBuffer record = startRecord(OUTCOME, sequence, 12);
+		record.putInt(code);
+		record.putLong(blockNumber);
+		finishRecord(record, false);
+
+		unresolved.remove(sequence);
+		if (unresolved.isEmpty() && buffer.position() > buffer.capacity() / 2) {
+			restart();
+		}
+	}
+
+	private ByteBuffer startRecord(final byte type, final long sequence, final int length) throws IOException {
+		ensureCapacity(RECORD_OVERHEAD + length);
+
+		ByteBuffer record = buffer.duplicate();
+		record.putInt(length);
+		record.putInt(epoch);
+		record.put(type);
+		record.putLong(sequence);
+		return record;
+	}
+
+	private void finishRecord(final ByteBuffer record, final boolean force) {
+		int start = buffer.position();
+		CRC32 crc = new CRC32();
+		ByteBuffer checksummed = buffer.duplicate();
+		checksummed.position(start + 4).limit(record.position());
+		crc.update(checksummed);
+		record.putInt((int) crc.getValue());
+
+		// Terminate the journal after this record, in case it overwrites older, longer records.
+		if (record.remaining() >= 8) {
+			record.duplicate().putInt(0).putInt(-1);
+		}
+
+		buffer.position(record.position());
+		if (force) {
+			buffer.force();
+		}
+	}
+
+	private void ensureCapacity(final int recordSize) throws IOException {
+		if (buffer.remaining() >= recordSize + 8) {
+			return;
+		}
+
+		int position = buffer.position();
+		long capacity = buffer.capacity();
+		while (capacity - position < recordSize + 8) {
+			capacity *= 2;
+		}
+		if (capacity > Integer.MAX_VALUE) {
+			throw new IOException("Journal is full with " + unresolved.size() + " unresolved entries");
+		}
+
+		buffer.force();
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		buffer.position(position);
+	}
+
+	private void restart() {
+		epoch++;
+		buffer.putInt(4, epoch);
+		buffer.putInt(HEADER_SIZE, 0);
+		buffer.putInt(HEADER_SIZE + 4, -1);
+		buffer.position(HEADER_SIZE);
+		buffer.force();
+	}
+
+	private static void writeBytes(final ByteBuffer buffer, final byte[] bytes) {
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	private static byte[] readBytes(final ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private static String readString(final ByteBuffer buffer) {
+		return new String(readBytes(buffer), StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		buffer.force();
+		channel.close();
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, payload size and result code metrics for Gateway transactions, tagged by transaction function name.
+ * Latencies are recorded separately for each phase of the transaction flow so that time spent on endorsement, orderer
+ * submission and waiting for commit can be told apart.
+ */
+public final class TransactionMetrics {
+	public enum Phase {
+		EVALUATE,
+		ENDORSE,
+		SUBMIT,
+		COMMIT
+	}
+
+	public enum Direction {
+		REQUEST,
+		RESPONSE
+	}
+
+	private final ConcurrentMap<String, Histogram> latencies = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Histogram> payloadSizes = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LongAdder> results = new ConcurrentHashMap<>();
+
+	public void recordLatency(final String function, final Phase phase, final long nanos) {
+		latencies.computeIfAbsent(key(function, phase.name()), k -> new Histogram()).record(nanos);
+	}
+
+	public void recordPayloadSize(final String function, final Direction direction, final int bytes) {
+		payloadSizes.computeIfAbsent(key(function, direction.name()), k -> new Histogram()).record(bytes);
+	}
+
+	public void recordResult(final String function, final String code) {
+		results.computeIfAbsent(key(function, code), k -> new LongAdder()).increment();
+	}
+
+	public Histogram getLatency(final String function, final Phase phase) {
+		return latencies.get(key(function, phase.name()));
+	}
+
+	private static String key(final String function, final String tag) {
+		return function + '\0' + tag;
+	}
+
+	/**
+	 * Metrics in Prometheus text exposition format.
+	 */
+	public String render() {
+		StringBuilder result = new StringBuilder();
+
+		result.append("# TYPE gateway_phase_seconds summary\n");
+		new TreeMap<>(latencies).forEach((key, histogram) -> {
+			String labels = labels(key, "phase");
+			appendQuantiles(result, "gateway_phase_seconds", labels, histogram, 1e-9);
+			result.append(String.format("gateway_phase_seconds_sum{%s} %.6f%n", labels, histogram.getSum() / 1e9));
+			result.append(String.format("gateway_phase_seconds_count{%s} %d%n", labels, histogram.getCount()));
+		});
+
+		result.append("# TYPE gateway_payload_bytes summary\n");
+		new TreeMap<>(payloadSizes).forEach((key, histogram) -> {
+			String labels = labels(key, "direction");
+			appendQuantiles(result, "gateway_payload_bytes", labels, histogram, 1);
+			result.append(String.format("gateway_payload_bytes_sum{%s} %d%n", labels, histogram.getSum()));
+			result.append(String.format("gateway_payload_bytes_count{%s} %d%n", labels, histogram.getCount()));
+		});
+
+		result.append("# TYPE gateway_transactions_total counter\n");
+		new TreeMap<>(results).forEach((key, count) ->
+				result.append(String.format("gateway_transactions_total{%s} %d%n", labels(key, "code"), count.sum())));
+
+		return result.toString();
+	}
+
+	private static void appendQuantiles(final StringBuilder result, final String name, final String labels,
+			final Histogram histogram, final double scale) {
+		for (double quantile : new double[] { 0.5, 0.95, 0.99 }) {
+			result.append(String.format("%s{%s,quantile=\"%s\"} %s%n", name, labels, quantile,
+					histogram.getValueAtPercentile(quantile * 100) * scale));
+		}
+	}
+
+	private static String labels(final String key, final String tagName) {
+		int separator = key.indexOf('\0');
+		return "function=\"" + key.substring(0, separator) + "\"," + tagName + "=\""
+				+ key.substring(separator + 1).toLowerCase() + "\"";
+	}
+
+	/**
+	 * Human readable per-function, per-phase latency summary for logging.
+	 */
+	public String summary() {
+		StringBuilder result = new StringBuilder();
+
+		Map<String, Histogram> sorted = new TreeMap<>(latencies);
+		sorted.forEach((key, histogram) -> {
+			int separator = key.indexOf('\0');
+			result.append(String.format("- %s %s: count=%d, mean=%dms, p50=%dms, p95=%dms, p99=%dms, max=%dms%n",
+					key.substring(0, separator), key.substring(separator + 1).toLowerCase(), histogram.getCount(),
+					toMillis((long) histogram.getMean()), toMillis(histogram.getValueAtPercentile(50)),
+					toMillis(histogram.getValueAtPercentile(95)), toMillis(histogram.getValueAtPercentile(99)),
+					toMillis(histogram.getMax())));
+		});
+
+		new TreeMap<>(results).forEach((key, count) -> {
+			int separator = key.indexOf('\0');
+			result.append(String.format("- %s result %s: %d%n",
+					key.substring(0, separator), key.substring(separator + 1), count.sum()));
+		});
+
+		return result.toString();
+	}
+
+	private static long toMillis(final long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+}
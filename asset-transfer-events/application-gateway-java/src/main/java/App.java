@@ -4,9 +4,14 @@
  * SPDX-License-Identifier: Apache-2.0
  */
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.concurrent.CompletableFuture;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import com.google.gson.Gson;
@@ -18,12 +23,13 @@ import org.hyperledger.fabric.client.CallOption;
 import org.hyperledger.fabric.client.ChaincodeEvent;
 import org.hyperledger.fabric.client.ChaincodeEventsRequest;
 import org.hyperledger.fabric.client.CloseableIterator;
-import org.hyperledger.fabric.client.CommitException;
 import org.hyperledger.fabric.client.CommitStatusException;
 import org.hyperledger.fabric.client.Contract;
 import org.hyperledger.fabric.client.EndorseException;
 import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
 import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.client.Proposal;
 import org.hyperledger.fabric.client.Status;
 import org.hyperledger.fabric.client.SubmitException;
 import org.hyperledger.fabric.client.SubmittedTransaction;
@@ -31,11 +37,23 @@ import org.hyperledger.fabric.client.SubmittedTransaction;
 public final class App {
 	private static final String channelName = "mychannel";
 	private static final String chaincodeName = "events";
+	private static final Path checkpointPath = Paths.get("events.checkpoint");
+	private static final Path assetViewPath = Paths.get("assets.view");
+	private static final int assetViewCapacity = 100_000;
+	private static final int eventWorkers = 4;
+	private static final int eventBufferCapacity = 1024;
+	// Differs from the asset-transfer-basic application's port so both can run on one host
+	private static final int metricsPort = 9465;
+	// Ask the chaincode to emit compact events holding only changed fields, where supported
+	private static final Map<String, byte[]> compactEvents = Map.of(AssetEventDecoder.EVENT_FORMAT_KEY,
+			AssetEventDecoder.COMPACT_EVENT_FORMAT.getBytes(StandardCharsets.UTF_8));
 
 	private final Network network;
 	private final Contract contract;
 	private final String assetId = "asset" + Instant.now().toEpochMilli();
 	private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	private final AssetEventDecoder eventDecoder = new AssetEventDecoder();
+	private final EventLatencyTracker latencyTracker = new EventLatencyTracker(Duration.ofMinutes(5), 10_000);
 
 	public static void main(final String[] args) throws Exception {
 		ManagedChannel grpcChannel = Connections.newGrpcConnection();
@@ -60,9 +78,17 @@ public final class App {
 		contract = network.getContract(chaincodeName);
 	}
 
-	public void run() throws EndorseException, SubmitException, CommitStatusException, CommitException {
-		// Listen for events emitted by subsequent transactions, stopping when the try-with-resources block exits
-		try (CloseableIterator<ChaincodeEvent> eventSession = startChaincodeEventListening()) {
+	public void run() throws GatewayException, IOException {
+		// Listen for events emitted by subsequent transactions, stopping when the try-with-resources block exits.
+		// Listening resumes from the last checkpointed event, if any, so events are not missed across restarts.
+		// Events are handled by a pipeline of workers, in order for each asset, and the listener is closed first so
+		// that events already received are processed and checkpointed before the pipeline stops.
+		EventPipeline<ChaincodeEvent> pipeline = new EventPipeline<>(eventWorkers, eventBufferCapacity,
+				App::assetIdOf, this::printChaincodeEvent);
+		try (MetricsReporter metricsReporter = startMetricsReporting(pipeline);
+				EventCheckpointer checkpointer = new EventCheckpointer(checkpointPath, Duration.ofMillis(100));
+				pipeline;
+				CheckpointedEventListener eventSession = startChaincodeEventListening(checkpointer, pipeline)) {
 			long firstBlockNumber = createAsset();
 			updateAsset();
 			transferAsset();
@@ -71,21 +97,69 @@ public final class App {
 			// Replay events from the block containing the first transaction
 			replayChaincodeEvents(firstBlockNumber);
 		}
+
+		materializeAssetView();
+
+		System.out.println("\n*** Event pipeline");
+		System.out.print(pipeline.summary());
+		System.out.println("*** Submit to event latency");
+		System.out.print(latencyTracker.summary());
 	}
 
-	private CloseableIterator<ChaincodeEvent> startChaincodeEventListening() {
+	/**
+	 * Publish submit to event latency for scraping, and log a summary of event handling periodically.
+	 */
+	private MetricsReporter startMetricsReporting(final EventPipeline<ChaincodeEvent> pipeline) throws IOException {
+		MetricsReporter reporter = new MetricsReporter(List.of(latencyTracker::render));
+		try {
+			reporter.serveHttp(metricsPort);
+		} catch (IOException e) {
+			reporter.close();
+			throw e;
+		}
+		reporter.logEvery(Duration.ofSeconds(30), List.of(pipeline::summary, latencyTracker::summary));
+
+		return reporter;
+	}
+
+	private CheckpointedEventListener startChaincodeEventListening(final EventCheckpointer checkpointer,
+			final EventPipeline<ChaincodeEvent> pipeline) throws GatewayException, IOException {
 		System.out.println("\n*** Start chaincode event listening");
 
-		CloseableIterator<ChaincodeEvent> eventIter = network.getChaincodeEvents(chaincodeName);
+		// A checkpoint left from a previous network is discarded when the listener is created
+		CheckpointedEventListener listener = new CheckpointedEventListener(network, chaincodeName, checkpointer);
+		if (checkpointer.getBlockNumber() >= 0) {
+			System.out.println("*** Resuming after event " + checkpointer.getEventIndex() + " in block "
+					+ checkpointer.getBlockNumber());
+		}
+		listener.start(pipeline);
 
-		CompletableFuture.runAsync(() -> {
-			eventIter.forEachRemaining(event -> {
-				String payload = prettyJson(event.getPayload());
-				System.out.println("\n<-- Chaincode event received: " + event.getEventName() + " - " + payload);
-			});
-		});
+		return listener;
+	}
 
-		return eventIter;
+	private void printChaincodeEvent(final ChaincodeEvent event) {
+		latencyTracker.delivered(event);
+		String payload = decodeEvent(eventDecoder, event);
+		System.out.println("\n<-- Chaincode event received: " + event.getEventName() + " - " + payload);
+	}
+
+	/**
+	 * Full asset state from an event payload, which may hold only the changed fields.
+	 */
+	private String decodeEvent(final AssetEventDecoder decoder, final ChaincodeEvent event) {
+		try {
+			return prettyJson(decoder.decode(event));
+		} catch (IllegalStateException e) {
+			// Compact events for assets modified before listening started cannot be rebuilt
+			return e.getMessage();
+		}
+	}
+
+	/**
+	 * Asset ID from an event payload, used to keep events for the same asset in order.
+	 */
+	private static String assetIdOf(final ChaincodeEvent event) {
+		return AssetEventDecoder.assetIdOf(event.getPayload());
 	}
 
 	private String prettyJson(final byte[] json) {
@@ -100,49 +174,102 @@ public final class App {
 	private long createAsset() throws EndorseException, SubmitException, CommitStatusException {
 		System.out.println("\n--> Submit transaction: CreateAsset, " + assetId + " owned by Sam with appraised value 100");
 
-		SubmittedTransaction commit = contract.newProposal("CreateAsset")
+		Status status = submit(contract.newProposal("CreateAsset")
 				.addArguments(assetId, "blue", "10", "Sam", "100")
-				.build()
-				.endorse()
-				.submitAsync();
-
-		Status status = commit.getStatus();
-		if (!status.isSuccessful()) {
-			throw new RuntimeException("failed to commit transaction with status code " + status.getCode());
-		}
+				.putAllTransient(compactEvents)
+				.build());
 
 		System.out.println("\n*** CreateAsset committed successfully");
 
 		return status.getBlockNumber();
 	}
 
-	private void updateAsset() throws EndorseException, SubmitException, CommitStatusException, CommitException {
+	private void updateAsset() throws EndorseException, SubmitException, CommitStatusException {
 		System.out.println("\n--> Submit transaction: UpdateAsset, " + assetId + " update appraised value to 200");
 
-		contract.submitTransaction("UpdateAsset", assetId, "blue", "10", "Sam", "200");
+		submit(contract.newProposal("UpdateAsset")
+				.addArguments(assetId, "blue", "10", "Sam", "200")
+				.putAllTransient(compactEvents)
+				.build());
 
 		System.out.println("\n*** UpdateAsset committed successfully");
 	}
 
-	private void transferAsset() throws EndorseException, SubmitException, CommitStatusException, CommitException {
+	private void transferAsset() throws EndorseException, SubmitException, CommitStatusException {
 		System.out.println("\n--> Submit transaction: TransferAsset, " + assetId + " to Mary");
 
-		contract.submitTransaction("TransferAsset", assetId, "Mary");
+		submit(contract.newProposal("TransferAsset")
+				.addArguments(assetId, "Mary")
+				.putAllTransient(compactEvents)
+				.build());
 
 		System.out.println("\n*** TransferAsset committed successfully");
 	}
 
-	private void deleteAsset() throws EndorseException, SubmitException, CommitStatusException, CommitException {
+	private void deleteAsset() throws EndorseException, SubmitException, CommitStatusException {
 		System.out.println("\n--> Submit transaction: DeleteAsset, " + assetId);
 
-		contract.submitTransaction("DeleteAsset", assetId);
+		submit(contract.newProposal("DeleteAsset")
+				.addArguments(assetId)
+				.putAllTransient(compactEvents)
+				.build());
 
 		System.out.println("\n*** DeleteAsset committed successfully");
 	}
 
+	/**
+	 * Endorse and submit a transaction, and wait for it to commit, tracking the time until its event is received.
+	 */
+	private Status submit(final Proposal proposal) throws EndorseException, SubmitException, CommitStatusException {
+		long start = System.nanoTime();
+		SubmittedTransaction commit = proposal.endorse().submitAsync();
+		latencyTracker.submitted(commit.getTransactionId(), start);
+
+		Status status = commit.getStatus();
+		latencyTracker.committed(status);
+		if (!status.isSuccessful()) {
+			throw new RuntimeException("failed to commit transaction with status code " + status.getCode());
+		}
+
+		return status;
+	}
+
+	private void materializeAssetView() throws GatewayException, IOException {
+		System.out.println("\n*** Materialize asset view from snapshot and chaincode events");
+
+		// A snapshot left from a previous network is ignored, since its block may never be committed to this ledger
+		long ledgerHeight = ChainInfo.getHeight(network);
+		try (AssetView view = new AssetView(assetViewPath, assetViewCapacity, Duration.ofSeconds(10), ledgerHeight)) {
+			// Only events since the last snapshot need to be replayed
+			long startBlock = Math.max(0, view.getBlockNumber());
+			System.out.println("*** Replaying events from block " + startBlock);
+
+			ChaincodeEventsRequest request = network.newChaincodeEventsRequest(chaincodeName)
+					.startBlock(startBlock)
+					.build();
+
+			try (CloseableIterator<ChaincodeEvent> eventIter = request.getEvents()) {
+				while (eventIter.hasNext()) {
+					ChaincodeEvent event = eventIter.next();
+					view.apply(event);
+
+					if (event.getEventName().equals("DeleteAsset") && assetIdOf(event).equals(assetId)) {
+						// Reached the last submitted transaction so the view is up to date
+						break;
+					}
+				}
+			}
+
+			System.out.print(view.summary());
+			System.out.println("*** Assets owned by Mary: " + view.findByOwner("Mary").size());
+		}
+	}
+
 	private void replayChaincodeEvents(final long startBlock) {
 		System.out.println("\n*** Start chaincode event replay");
 
+		AssetEventDecoder replayDecoder = new AssetEventDecoder();
+
 		ChaincodeEventsRequest request = network.newChaincodeEventsRequest(chaincodeName)
 				.startBlock(startBlock)
 				.build();
@@ -150,7 +277,7 @@ public final class App {
 		try (CloseableIterator<ChaincodeEvent> eventIter = request.getEvents()) {
 			while (eventIter.hasNext()) {
 				ChaincodeEvent event = eventIter.next();
-				String payload = prettyJson(event.getPayload());
+				String payload = decodeEvent(replayDecoder, event);
 				System.out.println("\n<-- Chaincode event replayed: " + event.getEventName() + " - " + payload);
 
 				if (event.getEventName().equals("DeleteAsset")) {
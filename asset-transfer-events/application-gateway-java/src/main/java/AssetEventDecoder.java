@@ -0,0 +1,278 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.hyperledger.fabric.client.ChaincodeEvent;
+
+/**
+ * Decodes asset event payloads emitted by the chaincode either as JSON holding the full asset, or in the compact
+ * format holding only the fields changed by the transaction. Compact events are requested by passing
+ * {@value #EVENT_FORMAT_KEY}={@value #COMPACT_EVENT_FORMAT} in the transient data of a transaction.
+ * <p>
+ * A compact payload starts with the format version, then the asset sequence number as a varint and the asset ID,
+ * followed by each changed field as a field ID and value. Strings are a varint length and UTF-8 bytes, and integers
+ * are zigzag varints.
+ * <p>
+ * {@link #parse(String, byte[])} returns the changes carried by a single event. An instance of the decoder also keeps
+ * the latest state of each asset, so that {@link #decode(ChaincodeEvent)} can rebuild the full asset from a compact
+ * event, checking that no events for the asset were missed. Events for different assets may be decoded concurrently,
+ * but events for the same asset must be decoded in order.
+ */
+public final class AssetEventDecoder {
+	public static final String EVENT_FORMAT_KEY = "event_format";
+	public static final String COMPACT_EVENT_FORMAT = "compact";
+
+	private static final byte COMPACT_FORMAT_VERSION = 1;
+	private static final byte COLOR = 1;
+	private static final byte SIZE = 2;
+	private static final byte OWNER = 3;
+	private static final byte APPRAISED_VALUE = 4;
+
+	private final Map<String, Change> assets = new ConcurrentHashMap<>();
+
+	/**
+	 * Asset fields set by an event. Fields not changed by a compact event are {@code null}.
+	 */
+	public static final class Change {
+		private final String assetId;
+		private final long sequence;
+		private final boolean deleted;
+		private final String color;
+		private final Integer size;
+		private final String owner;
+		private final Integer appraisedValue;
+
+		Change(final String assetId, final long sequence, final boolean deleted, final String color,
+				final Integer size, final String owner, final Integer appraisedValue) {
+			this.assetId = assetId;
+			this.sequence = sequence;
+			this.deleted = deleted;
+			this.color = color;
+			this.size = size;
+			this.owner = owner;
+			this.appraisedValue = appraisedValue;
+		}
+
+		public String getAssetId() {
+			return assetId;
+		}
+
+		/**
+		 * Number of times the asset has been created or modified, or -1 if the event did not include it.
+		 */
+		public long getSequence() {
+			return sequence;
+		}
+
+		public boolean isDeleted() {
+			return deleted;
+		}
+
+		public String getColor() {
+			return color;
+		}
+
+		public Integer getSize() {
+			return size;
+		}
+
+		public String getOwner() {
+			return owner;
+		}
+
+		public Integer getAppraisedValue() {
+			return appraisedValue;
+		}
+
+		/**
+		 * Whether every asset field is present, as in a JSON event or a compact create event.
+		 */
+		public boolean isComplete() {
+			return color != null && size != null && owner != null && appraisedValue != null;
+		}
+
+		/**
+		 * Apply these changes to the previous state of the asset.
+		 */
+		public Change applyTo(final Change previous) {
+			return new Change(assetId, sequence, deleted,
+					color != null ? color : previous.color,
+					size != null ? size : previous.size,
+					owner != null ? owner : previous.owner,
+					appraisedValue != null ? appraisedValue : previous.appraisedValue);
+		}
+
+		/**
+		 * The asset in the same JSON form as emitted by the chaincode.
+		 */
+		public byte[] toJson() {
+			return toJsonObject().toString().getBytes(StandardCharsets.UTF_8);
+		}
+
+		public JsonObject toJsonObject() {
+			JsonObject json = new JsonObject();
+			json.addProperty("ID", assetId);
+			if (color != null) {
+				json.addProperty("Color", color);
+			}
+			if (owner != null) {
+				json.addProperty("Owner", owner);
+			}
+			if (size != null) {
+				json.addProperty("Size", size.toString());
+			}
+			if (appraisedValue != null) {
+				json.addProperty("AppraisedValue", appraisedValue.toString());
+			}
+			if (sequence >= 0) {
+				json.addProperty("Sequence", Long.toString(sequence));
+			}
+			return json;
+		}
+	}
+
+	public static boolean isCompact(final byte[] payload) {
+		return payload.length > 0 && payload[0] == COMPACT_FORMAT_VERSION;
+	}
+
+	/**
+	 * ID of the asset an event payload applies to, in either format.
+	 */
+	public static String assetIdOf(final byte[] payload) {
+		if (isCompact(payload)) {
+			ByteBuffer buffer = ByteBuffer.wrap(payload, 1, payload.length - 1);
+			readVarLong(buffer);
+			return readString(buffer);
+		}
+
+		JsonElement id = parseJson(payload).get("ID");
+		return id != null ? id.getAsString() : "";
+	}
+
+	/**
+	 * Changes carried by a single event payload, in either format.
+	 */
+	public static Change parse(final String eventName, final byte[] payload) {
+		boolean deleted = eventName.equals("DeleteAsset");
+		if (!isCompact(payload)) {
+			JsonObject json = parseJson(payload);
+			return new Change(json.get("ID").getAsString(),
+					json.has("Sequence") ? json.get("Sequence").getAsLong() : -1,
+					deleted,
+					json.has("Color") ? json.get("Color").getAsString() : null,
+					json.has("Size") ? json.get("Size").getAsInt() : null,
+					json.has("Owner") ? json.get("Owner").getAsString() : null,
+					json.has("AppraisedValue") ? json.get("AppraisedValue").getAsInt() : null);
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(payload, 1, payload.length - 1);
+		long sequence = readVarLong(buffer);
+		String assetId = readString(buffer);
+		String color = null;
+		Integer size = null;
+		String owner = null;
+		Integer appraisedValue = null;
+
+		while (buffer.hasRemaining()) {
+			byte field = buffer.get();
+			switch (field) {
+			case COLOR:
+				color = readString(buffer);
+				break;
+			case SIZE:
+				size = readZigzag(buffer);
+				break;
+			case OWNER:
+				owner = readString(buffer);
+				break;
+			case APPRAISED_VALUE:
+				appraisedValue = readZigzag(buffer);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown field " + field + " in event for asset " + assetId);
+			}
+		}
+
+		return new Change(assetId, sequence, deleted, color, size, owner, appraisedValue);
+	}
+
+	/**
+	 * Full state of the asset after an event, in the same JSON form as emitted by the chaincode. For a delete event,
+	 * this is the state of the asset when it was deleted.
+	 *
+	 * @throws IllegalStateException if a compact event cannot be applied because the previous state of the asset is
+	 * unknown or events for the asset were missed.
+	 */
+	public byte[] decode(final ChaincodeEvent event) {
+		return apply(parse(event.getEventName(), event.getPayload())).toJson();
+	}
+
+	/**
+	 * Apply the changes carried by an event, as returned by {@link #parse(String, byte[])}, to the latest state of the
+	 * asset. This allows events to be parsed in parallel and their changes applied in order afterwards.
+	 *
+	 * @return Full state of the asset after the event.
+	 * @throws IllegalStateException if the previous state of the asset is needed but unknown, or events for the asset
+	 * were missed.
+	 */
+	public Change apply(final Change change) {
+		Change previous = assets.get(change.assetId);
+
+		Change state;
+		if (change.isComplete()) {
+			state = change;
+		} else if (previous == null) {
+			throw new IllegalStateException("No previous state for asset " + change.assetId);
+		} else if (previous.sequence >= 0 && change.sequence >= 0 && change.sequence != previous.sequence + 1) {
+			throw new IllegalStateException("Missed events for asset " + change.assetId + ": expected sequence "
+					+ (previous.sequence + 1) + " but received " + change.sequence);
+		} else {
+			state = change.applyTo(previous);
+		}
+
+		if (state.deleted) {
+			assets.remove(state.assetId);
+		} else {
+			assets.put(state.assetId, state);
+		}
+		return state;
+	}
+
+	private static JsonObject parseJson(final byte[] payload) {
+		return JsonParser.parseString(new String(payload, StandardCharsets.UTF_8)).getAsJsonObject();
+	}
+
+	private static String readString(final ByteBuffer buffer) {
+		int length = (int) readVarLong(buffer);
+		String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+	private static int readZigzag(final ByteBuffer buffer) {
+		int value = (int) readVarLong(buffer);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long readVarLong(final ByteBuffer buffer) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed varint in event payload");
+	}
+}
@@ -0,0 +1,554 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+
+/**
+ * Current state of every asset, materialized from the chaincode events emitted by asset transactions, so that reads
+ * can be served without querying the ledger. Events may hold the full asset as JSON or only its changed fields in
+ * compact form, as decoded by {@link AssetEventDecoder}. Assets are held off-heap in fixed-size records in a
+ * memory-mapped file, with owners and colors stored as {@link StringDictionary} codes. An in-memory index maps asset
+ * IDs to records, and a secondary index maps owners to their assets. Each record also holds the asset sequence number
+ * from the last event, so that a compact event which does not follow it is rejected rather than applied to an out of
+ * date state.
+ * <p>
+ * Events are applied by a single writer, in the order they are delivered by the event stream. Reads may be made
+ * concurrently from any thread and do not lock: each record carries a sequence number that is odd while the record is
+ * being written, and a reader retries if the sequence number changed while it was reading.
+ * <p>
+ * The view is periodically written to a snapshot holding every live asset, the dictionaries, and the position of the
+ * last applied event. A new consumer opens the view from the latest snapshot and listens for events from
+ * {@link #getBlockNumber()}; events up to the snapshot position are recognized and skipped, so there is no need to
+ * replay events from the start of the ledger.
+ */
+public final class AssetView implements AutoCloseable {
+	private static final int MAGIC = 0x46415332; // "FAS2"
+	private static final int SNAPSHOT_MAGIC = 0x46415353; // "FASS"
+	private static final byte SNAPSHOT_VERSION = 2;
+	private static final int HEADER_SIZE = 16;
+	private static final int MAX_ID_LENGTH = 62;
+	// seq, block, asset sequence, fields, id
+	private static final int RECORD_SIZE = 8 + 8 + 8 + 4 + 4 + 4 + 4 + 1 + 1 + MAX_ID_LENGTH;
+	private static final int SEQUENCE = 0;
+	private static final int BLOCK = 8;
+	private static final int ASSET_SEQUENCE = 16;
+	private static final int COLOR = 24;
+	private static final int OWNER = 28;
+	private static final int SIZE = 32;
+	private static final int VALUE = 36;
+	private static final int LIVE = 40;
+	private static final int ID_LENGTH = 41;
+	private static final int ID = 42;
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+	private final Path snapshotPath;
+	private final long snapshotIntervalNanos;
+	private final int capacity;
+	private final FileChannel channel;
+	private final MappedByteBuffer records;
+	private final StringDictionary owners = new StringDictionary();
+	private final StringDictionary colors = new StringDictionary();
+	private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+	private final Map<Integer, Set<Integer>> slotsByOwner = new ConcurrentHashMap<>();
+	private final Deque<Integer> freeSlots = new ArrayDeque<>();
+	private int nextSlot = 0;
+	private volatile long blockNumber = -1;
+	private int eventIndex = 0;
+	private String transactionId = "";
+	private int skipInBlock = 0;
+	private long lastSnapshotNanos = System.nanoTime();
+	private long appliedCount = 0;
+	private long snapshotCount = 0;
+
+	/**
+	 * Current state of an asset.
+	 */
+	public static final class Asset {
+		private final String id;
+		private final String color;
+		private final int size;
+		private final String owner;
+		private final int appraisedValue;
+		private final long sequence;
+		private final long blockNumber;
+
+		public Asset(final String id, final String color, final int size, final String owner,
+				final int appraisedValue, final long sequence, final long blockNumber) {
+			this.id = id;
+			this.color = color;
+			this.size = size;
+			this.owner = owner;
+			this.appraisedValue = appraisedValue;
+			this.sequence = sequence;
+			this.blockNumber = blockNumber;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getColor() {
+			return color;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public String getOwner() {
+			return owner;
+		}
+
+		public int getAppraisedValue() {
+			return appraisedValue;
+		}
+
+		/**
+		 * Number of times the asset has been created or modified, or -1 if the last event did not include it.
+		 */
+		public long getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * Block containing the transaction that last modified the asset.
+		 */
+		public long getBlockNumber() {
+			return blockNumber;
+		}
+
+		@Override
+		public String toString() {
+			return "Asset [id=" + id + ", color=" + color + ", size=" + size + ", owner=" + owner
+					+ ", appraisedValue=" + appraisedValue + ", sequence=" + sequence + ", block=" + blockNumber + "]";
+		}
+	}
+
+	/**
+	 * Open a view, loading the latest snapshot if one exists. The record file is rebuilt from the snapshot. If the
+	 * snapshot cannot be read, or its position is at or beyond the current ledger height because it was taken from a
+	 * ledger that has since been recreated, it is ignored and the view starts empty, so that all events are replayed.
+	 *
+	 * @param path Memory-mapped record file.
+	 * @param capacity Maximum number of live assets.
+	 * @param snapshotInterval Minimum time between snapshots taken as events are applied, or zero to take snapshots
+	 * only when {@link #snapshot()} is called.
+	 * @param ledgerHeight Current height of the ledger from which events are applied.
+	 */
+	public AssetView(final Path path, final int capacity, final Duration snapshotInterval, final long ledgerHeight)
+			throws IOException {
+		this.snapshotPath = Paths.get(path + ".snapshot");
+		this.snapshotIntervalNanos = snapshotInterval.toNanos();
+		this.capacity = capacity;
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.records = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+		records.putInt(0, MAGIC);
+		records.putInt(4, capacity);
+
+		if (Files.exists(snapshotPath)) {
+			try {
+				loadSnapshot(ledgerHeight);
+			} catch (IOException e) {
+				System.err.println("Ignoring unreadable snapshot " + snapshotPath + ", replaying from block 0: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Block from which to listen for events to bring the view up to date, or -1 if no events have been applied.
+	 */
+	public long getBlockNumber() {
+		return blockNumber;
+	}
+
+	/**
+	 * Apply a chaincode event. Events must be applied in the order they are delivered by the event stream, starting
+	 * at or before {@link #getBlockNumber()}; events already reflected in the view are skipped.
+	 *
+	 * @return {@code true} if the event was applied, or {@code false} if it was skipped.
+	 * @throws IllegalStateException if the event is a compact event and events for its asset were missed.
+	 */
+	public synchronized boolean apply(final ChaincodeEvent event) throws IOException {
+		long block = event.getBlockNumber();
+		if (block < blockNumber) {
+			return false;
+		}
+		if (block > blockNumber) {
+			skipInBlock = 0;
+		}
+		if (skipInBlock > 0) {
+			skipInBlock--;
+			if (skipInBlock == 0 && !event.getTransactionId().equals(transactionId)) {
+				System.err.println("Snapshot transaction " + transactionId + " does not match replayed transaction "
+						+ event.getTransactionId());
+			}
+			return false;
+		}
+
+		switch (event.getEventName()) {
+		case "CreateAsset":
+		case "UpdateAsset":
+		case "TransferAsset":
+			update(AssetEventDecoder.parse(event.getEventName(), event.getPayload()), block);
+			break;
+		case "DeleteAsset":
+			remove(AssetEventDecoder.assetIdOf(event.getPayload()));
+			break;
+		default:
+			break;
+		}
+
+		eventIndex = block == blockNumber ? eventIndex + 1 : 1;
+		blockNumber = block;
+		transactionId = event.getTransactionId();
+		appliedCount++;
+
+		if (snapshotIntervalNanos > 0 && System.nanoTime() - lastSnapshotNanos >= snapshotIntervalNanos) {
+			snapshot();
+		}
+		return true;
+	}
+
+	/**
+	 * Current state of an asset, or {@code null} if it does not exist.
+	 */
+	public Asset get(final String assetId) {
+		Integer slot = slots.get(assetId);
+		if (slot == null) {
+			return null;
+		}
+
+		Asset asset = read(slot);
+		// The record may have been reused for another asset after this one was deleted
+		return asset != null && asset.id.equals(assetId) ? asset : null;
+	}
+
+	/**
+	 * Current state of all assets belonging to an owner.
+	 */
+	public List<Asset> findByOwner(final String owner) {
+		List<Asset> results = new ArrayList<>();
+		int code = owners.lookup(owner);
+		Set<Integer> ownerSlots = code >= 0 ? slotsByOwner.get(code) : null;
+		if (ownerSlots == null) {
+			return results;
+		}
+
+		for (int slot : ownerSlots) {
+			Asset asset = read(slot);
+			// The asset may have been transferred since its record was found in the index
+			if (asset != null && asset.owner.equals(owner)) {
+				results.add(asset);
+			}
+		}
+		return results;
+	}
+
+	public int size() {
+		return slots.size();
+	}
+
+	private Asset read(final int slot) {
+		int offset = HEADER_SIZE + slot * RECORD_SIZE;
+		while (true) {
+			long before = (long) LONGS.getAcquire(records, offset + SEQUENCE);
+			if ((before & 1) == 0) {
+				try {
+					Asset asset = readRecord(offset);
+					VarHandle.loadLoadFence();
+					if ((long) LONGS.getOpaque(records, offset + SEQUENCE) == before) {
+						return asset;
+					}
+				} catch (IllegalArgumentException e) {
+					// A record being written may hold codes not yet visible in the dictionary, so retry
+					VarHandle.loadLoadFence();
+					if ((long) LONGS.getOpaque(records, offset + SEQUENCE) == before) {
+						throw new IllegalStateException("Corrupt asset record " + slot, e);
+					}
+				}
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	private Asset readRecord(final int offset) {
+		if (records.get(offset + LIVE) == 0) {
+			return null;
+		}
+
+		int idLength = Math.min(records.get(offset + ID_LENGTH) & 0xff, MAX_ID_LENGTH);
+		byte[] id = new byte[idLength];
+		for (int i = 0; i < idLength; i++) {
+			id[i] = records.get(offset + ID + i);
+		}
+
+		return new Asset(new String(id, StandardCharsets.UTF_8),
+				colors.decode(records.getInt(offset + COLOR)),
+				records.getInt(offset + SIZE),
+				owners.decode(records.getInt(offset + OWNER)),
+				records.getInt(offset + VALUE),
+				records.getLong(offset + ASSET_SEQUENCE),
+				records.getLong(offset + BLOCK));
+	}
+
+	/**
+	 * Apply the fields set by an event, which for a compact event are only those that changed. A compact event must
+	 * directly follow the event that produced the stored state, as checked by their asset sequence numbers, since the
+	 * fields it leaves unchanged would otherwise be taken from an out of date state.
+	 */
+	private void update(final AssetEventDecoder.Change change, final long block) {
+		Asset previous = change.isComplete() ? null : get(change.getAssetId());
+		if (!change.isComplete() && previous == null) {
+			System.err.println("Ignoring change to asset " + change.getAssetId() + " with unknown previous state");
+			return;
+		}
+		if (previous != null && previous.sequence >= 0 && change.getSequence() >= 0
+				&& change.getSequence() != previous.sequence + 1) {
+			throw new IllegalStateException("Missed events for asset " + change.getAssetId() + ": expected sequence "
+					+ (previous.sequence + 1) + " but received " + change.getSequence());
+		}
+
+		put(new Asset(change.getAssetId(),
+				change.getColor() != null ? change.getColor() : previous.color,
+				change.getSize() != null ? change.getSize() : previous.size,
+				change.getOwner() != null ? change.getOwner() : previous.owner,
+				change.getAppraisedValue() != null ? change.getAppraisedValue() : previous.appraisedValue,
+				change.getSequence(),
+				block));
+	}
+
+	private void put(final Asset asset) {
+		byte[] id = asset.id.getBytes(StandardCharsets.UTF_8);
+		if (id.length > MAX_ID_LENGTH) {
+			throw new IllegalArgumentException("Asset ID too long: " + asset.id);
+		}
+
+		Integer existing = slots.get(asset.id);
+		int slot = existing != null ? existing : allocateSlot();
+		int offset = HEADER_SIZE + slot * RECORD_SIZE;
+		int colorCode = colors.encode(asset.color);
+		int ownerCode = owners.encode(asset.owner);
+		int previousOwnerCode = existing != null ? records.getInt(offset + OWNER) : -1;
+
+		beginWrite(offset);
+		records.putLong(offset + BLOCK, asset.blockNumber);
+		records.putLong(offset + ASSET_SEQUENCE, asset.sequence);
+		records.putInt(offset + COLOR, colorCode);
+		records.putInt(offset + OWNER, ownerCode);
+		records.putInt(offset + SIZE, asset.size);
+		records.putInt(offset + VALUE, asset.appraisedValue);
+		records.put(offset + LIVE, (byte) 1);
+		records.put(offset + ID_LENGTH, (byte) id.length);
+		for (int i = 0; i < id.length; i++) {
+			records.put(offset + ID + i, id[i]);
+		}
+		endWrite(offset);
+
+		if (existing == null) {
+			slots.put(asset.id, slot);
+		}
+		if (ownerCode != previousOwnerCode) {
+			slotsByOwner.computeIfAbsent(ownerCode, k -> ConcurrentHashMap.newKeySet()).add(slot);
+			if (previousOwnerCode >= 0) {
+				slotsByOwner.get(previousOwnerCode).remove(slot);
+			}
+		}
+	}
+
+	private void remove(final String assetId) {
+		Integer slot = slots.remove(assetId);
+		if (slot == null) {
+			return;
+		}
+
+		int offset = HEADER_SIZE + slot * RECORD_SIZE;
+		slotsByOwner.get(records.getInt(offset + OWNER)).remove(slot);
+
+		beginWrite(offset);
+		records.put(offset + LIVE, (byte) 0);
+		endWrite(offset);
+
+		freeSlots.push(slot);
+	}
+
+	private int allocateSlot() {
+		if (!freeSlots.isEmpty()) {
+			return freeSlots.pop();
+		}
+		if (nextSlot == capacity) {
+			throw new IllegalStateException("Asset view is full: " + capacity + " assets");
+		}
+		return nextSlot++;
+	}
+
+	private void beginWrite(final int offset) {
+		long sequence = (long) LONGS.get(records, offset + SEQUENCE);
+		LONGS.setOpaque(records, offset + SEQUENCE, sequence + 1);
+		VarHandle.storeStoreFence();
+	}
+
+	private void endWrite(final int offset) {
+		long sequence = (long) LONGS.get(records, offset + SEQUENCE);
+		LONGS.setRelease(records, offset + SEQUENCE, sequence + 1);
+	}
+
+	/**
+	 * Write a snapshot of all live assets and the position of the last applied event. The snapshot is written to a
+	 * temporary file, forced to disk and renamed into place, so the previous snapshot remains intact if writing fails.
+	 */
+	public synchronized void snapshot() throws IOException {
+		Path tempPath = Paths.get(snapshotPath + ".tmp");
+		try (FileChannel file = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file)))) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeByte(SNAPSHOT_VERSION);
+			out.writeLong(blockNumber);
+			out.writeInt(eventIndex);
+			out.writeUTF(transactionId);
+
+			writeDictionary(out, owners);
+			writeDictionary(out, colors);
+
+			out.writeInt(slots.size());
+			for (int slot : slots.values()) {
+				int offset = HEADER_SIZE + slot * RECORD_SIZE;
+				out.writeUTF(readRecord(offset).id);
+				out.writeLong(records.getLong(offset + BLOCK));
+				out.writeLong(records.getLong(offset + ASSET_SEQUENCE));
+				out.writeInt(records.getInt(offset + COLOR));
+				out.writeInt(records.getInt(offset + OWNER));
+				out.writeInt(records.getInt(offset + SIZE));
+				out.writeInt(records.getInt(offset + VALUE));
+			}
+
+			out.flush();
+			file.force(true);
+		}
+
+		Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		lastSnapshotNanos = System.nanoTime();
+		snapshotCount++;
+	}
+
+	private static void writeDictionary(final DataOutputStream out, final StringDictionary dictionary)
+			throws IOException {
+		out.writeInt(dictionary.size());
+		for (int code = 0; code < dictionary.size(); code++) {
+			out.writeUTF(dictionary.decode(code));
+		}
+	}
+
+	/**
+	 * Read the whole snapshot before applying any of it, so that the view is left empty if the snapshot is unreadable.
+	 */
+	private void loadSnapshot(final long ledgerHeight) throws IOException {
+		long block;
+		int index;
+		String lastTransactionId;
+		List<Asset> assets;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+			if (in.readInt() != SNAPSHOT_MAGIC || in.readByte() != SNAPSHOT_VERSION) {
+				throw new IOException("Not an asset view snapshot: " + snapshotPath);
+			}
+			block = in.readLong();
+			if (block >= ledgerHeight) {
+				System.err.println("Ignoring snapshot " + snapshotPath + " at block " + block + ", beyond ledger height "
+						+ ledgerHeight + ", replaying from block 0");
+				return;
+			}
+			index = in.readInt();
+			lastTransactionId = in.readUTF();
+
+			List<String> ownerValues = readDictionary(in);
+			List<String> colorValues = readDictionary(in);
+
+			int count = in.readInt();
+			if (count < 0 || count > capacity) {
+				throw new IOException("Snapshot holds " + count + " assets, but capacity is " + capacity);
+			}
+			assets = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				String id = in.readUTF();
+				if (id.getBytes(StandardCharsets.UTF_8).length > MAX_ID_LENGTH) {
+					throw new IOException("Asset ID too long in snapshot: " + id);
+				}
+				long assetBlock = in.readLong();
+				long sequence = in.readLong();
+				String color = lookup(colorValues, in.readInt());
+				String owner = lookup(ownerValues, in.readInt());
+				assets.add(new Asset(id, color, in.readInt(), owner, in.readInt(), sequence, assetBlock));
+			}
+		}
+
+		assets.forEach(this::put);
+		blockNumber = block;
+		eventIndex = index;
+		skipInBlock = index;
+		transactionId = lastTransactionId;
+	}
+
+	private static String lookup(final List<String> values, final int code) throws IOException {
+		if (code < 0 || code >= values.size()) {
+			throw new IOException("Invalid dictionary code in snapshot: " + code);
+		}
+		return values.get(code);
+	}
+
+	private static List<String> readDictionary(final DataInputStream in) throws IOException {
+		int size = in.readInt();
+		if (size < 0) {
+			throw new IOException("Invalid dictionary size in snapshot: " + size);
+		}
+		List<String> values = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			values.add(in.readUTF());
+		}
+		return values;
+	}
+
+	public synchronized String summary() {
+		return String.format("Assets: %d, owners: %d, colors: %d, events applied: %d, snapshots: %d, block: %d%n",
+				slots.size(), owners.size(), colors.size(), appliedCount, snapshotCount, blockNumber);
+	}
+
+	/**
+	 * Write a final snapshot and release the record file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		snapshot();
+		channel.close();
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.protos.common.Block;
+import org.hyperledger.fabric.protos.common.BlockMetadataIndex;
+import org.hyperledger.fabric.protos.common.ChannelHeader;
+import org.hyperledger.fabric.protos.common.Envelope;
+import org.hyperledger.fabric.protos.common.HeaderType;
+import org.hyperledger.fabric.protos.common.Payload;
+import org.hyperledger.fabric.protos.peer.ChaincodeAction;
+import org.hyperledger.fabric.protos.peer.ChaincodeActionPayload;
+import org.hyperledger.fabric.protos.peer.ProposalResponsePayload;
+import org.hyperledger.fabric.protos.peer.Transaction;
+import org.hyperledger.fabric.protos.peer.TransactionAction;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+
+/**
+ * Extracts chaincode events from blocks received as block events, in the order they would be delivered by a chaincode
+ * event stream. Event payloads are not copied into byte arrays until they are requested.
+ */
+public final class BlockEvents {
+	private BlockEvents() {
+		// Private constructor to prevent instantiation
+	}
+
+	/**
+	 * Chaincode events emitted by the valid transactions in a block, for any chaincode.
+	 *
+	 * @throws InvalidProtocolBufferException if a valid transaction in the block cannot be read.
+	 */
+	public static List<ChaincodeEvent> chaincodeEvents(final Block block) throws InvalidProtocolBufferException {
+		List<ChaincodeEvent> events = new ArrayList<>();
+		long blockNumber = block.getHeader().getNumber();
+		ByteString validationCodes = block.getMetadata().getMetadata(BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE);
+
+		for (int i = 0; i < block.getData().getDataCount(); i++) {
+			if (i < validationCodes.size() && validationCodes.byteAt(i) != TxValidationCode.VALID_VALUE) {
+				continue;
+			}
+
+			try {
+				readTransaction(blockNumber, block.getData().getData(i), events);
+			} catch (InvalidProtocolBufferException e) {
+				throw new InvalidProtocolBufferException("Unreadable transaction " + i + " in block " + blockNumber
+						+ ": " + e.getMessage());
+			}
+		}
+
+		return events;
+	}
+
+	private static void readTransaction(final long blockNumber, final ByteString envelopeBytes,
+			final List<ChaincodeEvent> events) throws InvalidProtocolBufferException {
+		Payload payload = Payload.parseFrom(Envelope.parseFrom(envelopeBytes).getPayload());
+		ChannelHeader channelHeader = ChannelHeader.parseFrom(payload.getHeader().getChannelHeader());
+		if (channelHeader.getType() != HeaderType.ENDORSER_TRANSACTION_VALUE) {
+			return;
+		}
+
+		Transaction transaction = Transaction.parseFrom(payload.getData());
+		for (TransactionAction action : transaction.getActionsList()) {
+			ChaincodeActionPayload actionPayload = ChaincodeActionPayload.parseFrom(action.getPayload());
+			ProposalResponsePayload responsePayload = ProposalResponsePayload.parseFrom(
+					actionPayload.getAction().getProposalResponsePayload());
+			ChaincodeAction chaincodeAction = ChaincodeAction.parseFrom(responsePayload.getExtension());
+
+			org.hyperledger.fabric.protos.peer.ChaincodeEvent event =
+					org.hyperledger.fabric.protos.peer.ChaincodeEvent.parseFrom(chaincodeAction.getEvents());
+			if (!event.getEventName().isEmpty()) {
+				events.add(new BlockChaincodeEvent(blockNumber, channelHeader.getTxId(), event));
+			}
+		}
+	}
+
+	/**
+	 * Chaincode event read from a block.
+	 */
+	private static final class BlockChaincodeEvent implements ChaincodeEvent {
+		private final long blockNumber;
+		private final String transactionId;
+		private final org.hyperledger.fabric.protos.peer.ChaincodeEvent event;
+
+		BlockChaincodeEvent(final long blockNumber, final String transactionId,
+				final org.hyperledger.fabric.protos.peer.ChaincodeEvent event) {
+			this.blockNumber = blockNumber;
+			this.transactionId = transactionId;
+			this.event = event;
+		}
+
+		@Override
+		public long getBlockNumber() {
+			return blockNumber;
+		}
+
+		@Override
+		public String getTransactionId() {
+			return transactionId;
+		}
+
+		@Override
+		public String getChaincodeName() {
+			return event.getChaincodeId();
+		}
+
+		@Override
+		public String getEventName() {
+			return event.getEventName();
+		}
+
+		@Override
+		public byte[] getPayload() {
+			return event.getPayload().toByteArray();
+		}
+	}
+}
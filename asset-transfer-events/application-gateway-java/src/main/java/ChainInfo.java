@@ -0,0 +1,34 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.protos.common.BlockchainInfo;
+
+/**
+ * Reads the current height of a channel's ledger with the qscc GetChainInfo function. State stored locally against
+ * block numbers, such as event checkpoints and asset view snapshots, is checked against the height when it is loaded.
+ * State at or beyond the height was recorded against a ledger that has since been recreated, for example by
+ * restarting the test network, and would otherwise wait for blocks that may never be committed.
+ */
+public final class ChainInfo {
+	private ChainInfo() {
+		// Private constructor to prevent instantiation
+	}
+
+	/**
+	 * Number of blocks in the channel's ledger, which is also the number of the next block to be committed.
+	 */
+	public static long getHeight(final Network network) throws GatewayException {
+		byte[] chainInfo = network.getContract("qscc").evaluateTransaction("GetChainInfo", network.getName());
+		try {
+			return BlockchainInfo.parseFrom(chainInfo).getHeight();
+		} catch (InvalidProtocolBufferException e) {
+			throw new IllegalStateException("Unable to parse chain info", e);
+		}
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.protos.common.Block;
+
+/**
+ * Delivers chaincode events for any number of chaincodes on a channel from a single block event stream, rather than
+ * opening a separate chaincode event stream for each chaincode, each of which would receive every block from the peer.
+ * <p>
+ * Handlers are registered by chaincode name and, optionally, event name. Events are matched on their names only, so
+ * payloads of events with no matching handler are never copied into byte arrays or decoded. Handlers are called in
+ * block and transaction order on the stream's thread, and should hand off slow work, for example to an
+ * {@link EventPipeline}.
+ * <p>
+ * The position in the channel is stored by a single {@link EventCheckpointer} shared by all handlers. Events are
+ * indexed among all the chaincode events in their block, whether or not they have a handler, so the checkpoint
+ * remains valid if registrations change between restarts. The checkpoint advances after each delivered event and at
+ * the end of each block, so blocks with no matching events are not read again on restart. Handlers should be
+ * registered before starting, since events already checkpointed are not delivered to handlers registered later.
+ */
+public final class ChaincodeEventMultiplexer implements AutoCloseable {
+	private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+	private final Network network;
+	private final EventCheckpointer checkpointer;
+	private final Map<String, List<Registration>> registrations = new ConcurrentHashMap<>();
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final LongAdder blockCount = new LongAdder();
+	private final LongAdder eventCount = new LongAdder();
+	private final LongAdder deliveredCount = new LongAdder();
+	private volatile CloseableIterator<Block> blocks;
+	private volatile boolean closed = false;
+
+	// Position after the last checkpointed event, from which to resume if the stream fails
+	private long resumeBlock;
+	private int resumeIndex;
+
+	/**
+	 * Handler for events from one chaincode, with either a specific event name or {@code null} for all events.
+	 */
+	private static final class Registration {
+		private final String eventName;
+		private final Consumer<ChaincodeEvent> handler;
+
+		Registration(final String eventName, final Consumer<ChaincodeEvent> handler) {
+			this.eventName = eventName;
+			this.handler = handler;
+		}
+
+		boolean matches(final ChaincodeEvent event) {
+			return eventName == null || eventName.equals(event.getEventName());
+		}
+	}
+
+	/**
+	 * Create a multiplexer that resumes from the checkpoint. A checkpoint at or beyond the current ledger height was
+	 * recorded against a ledger that has since been recreated, so it is discarded and delivery starts from the current
+	 * block.
+	 */
+	public ChaincodeEventMultiplexer(final Network network, final EventCheckpointer checkpointer)
+			throws GatewayException, IOException {
+		this.network = network;
+		this.checkpointer = checkpointer;
+
+		long checkpointBlock = checkpointer.getBlockNumber();
+		long height = ChainInfo.getHeight(network);
+		if (checkpointer.discardIfAhead(height)) {
+			System.err.println("Discarding checkpoint at block " + checkpointBlock + ", beyond ledger height " + height);
+		}
+		this.resumeBlock = checkpointer.getBlockNumber();
+		this.resumeIndex = checkpointer.getEventIndex();
+	}
+
+	/**
+	 * Deliver all events emitted by a chaincode to the handler.
+	 */
+	public ChaincodeEventMultiplexer register(final String chaincodeName, final Consumer<ChaincodeEvent> handler) {
+		return register(chaincodeName, null, handler);
+	}
+
+	/**
+	 * Deliver events with the given name emitted by a chaincode to the handler.
+	 */
+	public ChaincodeEventMultiplexer register(final String chaincodeName, final String eventName,
+			final Consumer<ChaincodeEvent> handler) {
+		registrations.computeIfAbsent(chaincodeName, name -> new CopyOnWriteArrayList<>())
+				.add(new Registration(eventName, handler));
+		return this;
+	}
+
+	/**
+	 * Start delivering events to registered handlers on a background thread. The returned future completes
+	 * exceptionally if a handler throws, in which case the failed event is not checkpointed.
+	 */
+	public CompletableFuture<Void> start() {
+		return CompletableFuture.runAsync(this::listen, executor);
+	}
+
+	private void listen() {
+		while (!closed) {
+			try {
+				receiveBlocks();
+			} catch (GatewayRuntimeException e) {
+				if (closed) {
+					return;
+				}
+				System.err.println("Block event stream failed, resuming from block " + resumeBlock + ": " + e);
+			} catch (InvalidProtocolBufferException e) {
+				// No events from the block were delivered, so it is received again when listening resumes
+				System.err.println("Failed to read block " + resumeBlock + ", retrying: " + e);
+			}
+
+			if (!closed) {
+				sleep(RECONNECT_DELAY_MILLIS);
+			}
+		}
+	}
+
+	private void receiveBlocks() throws InvalidProtocolBufferException {
+		blocks = resumeBlock < 0
+				? network.getBlockEvents()
+				: network.newBlockEventsRequest().startBlock(resumeBlock).build().getEvents();
+
+		try {
+			while (!closed && blocks.hasNext()) {
+				Block block = blocks.next();
+				long blockNumber = block.getHeader().getNumber();
+				int skip = blockNumber == resumeBlock ? resumeIndex : 0;
+
+				List<ChaincodeEvent> events = BlockEvents.chaincodeEvents(block);
+				for (int index = skip; index < events.size(); index++) {
+					deliver(events.get(index), index);
+				}
+
+				eventCount.add(events.size());
+				blockCount.increment();
+				checkpoint(blockNumber + 1, 0, "");
+			}
+		} finally {
+			blocks.close();
+		}
+	}
+
+	private void deliver(final ChaincodeEvent event, final int index) {
+		List<Registration> handlers = registrations.get(event.getChaincodeName());
+		if (handlers == null) {
+			return;
+		}
+
+		boolean delivered = false;
+		for (Registration registration : handlers) {
+			if (registration.matches(event)) {
+				registration.handler.accept(event);
+				delivered = true;
+			}
+		}
+
+		if (delivered) {
+			deliveredCount.increment();
+			checkpoint(event.getBlockNumber(), index + 1, event.getTransactionId());
+		}
+	}
+
+	private void checkpoint(final long block, final int index, final String transactionId) {
+		try {
+			checkpointer.checkpoint(block, index, transactionId);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		resumeBlock = block;
+		resumeIndex = index;
+	}
+
+	public String summary() {
+		return String.format("Blocks: %d, chaincode events: %d, delivered: %d, registered chaincodes: %d%n",
+				blockCount.sum(), eventCount.sum(), deliveredCount.sum(), registrations.size());
+	}
+
+	private static void sleep(final long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		if (blocks != null) {
+			blocks.close();
+		}
+		executor.shutdownNow();
+
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.Network;
+
+/**
+ * Listens for chaincode events from the position stored by an {@link EventCheckpointer}, so that no events are missed
+ * or handled twice across application restarts. Each event is checkpointed after its handler returns. On restart, or
+ * after the event stream fails, listening resumes from the checkpoint block and skips the events within that block
+ * that were already handled.
+ * <p>
+ * An event whose handler completed just before the application stopped is delivered again if its checkpoint had not
+ * yet been written. Handlers that write their results durably should do so together with the checkpoint, or be
+ * idempotent.
+ * <p>
+ * Events can instead be published to an {@link EventPipeline}, so that slow handlers do not hold up reading of the
+ * event stream. The checkpoint then advances to the last event for which it and all earlier events have been
+ * processed by the pipeline, and is written both as events are published and periodically while the stream is idle.
+ * <p>
+ * Events can also be written to an {@link EventFileSink} sharing the same checkpointer. The sink then checkpoints
+ * events only once they are forced to disk, and removes any written after the checkpoint when it is reopened, so each
+ * event is written to the files exactly once.
+ */
+public final class CheckpointedEventListener implements AutoCloseable {
+	private static final long RECONNECT_DELAY_MILLIS = 1000;
+	private static final long CHECKPOINT_INTERVAL_MILLIS = 100;
+	private static final long DRAIN_TIMEOUT_SECONDS = 30;
+
+	private final Network network;
+	private final String chaincodeName;
+	private final EventCheckpointer checkpointer;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final Deque<Position> published = new ArrayDeque<>();
+	private volatile CloseableIterator<ChaincodeEvent> events;
+	private volatile boolean closed = false;
+	private ScheduledExecutorService checkpointExecutor;
+	private EventPipeline<ChaincodeEvent> pipeline;
+
+	// Position after the last event handed to a handler or pipeline, from which to resume if the stream fails
+	private long resumeBlock;
+	private int resumeIndex;
+	private String resumeTransactionId;
+
+	/**
+	 * Position of an event published to the pipeline but not yet checkpointed.
+	 */
+	private static final class Position {
+		private final long sequence;
+		private final long block;
+		private final int index;
+		private final String transactionId;
+
+		Position(final long sequence, final long block, final int index, final String transactionId) {
+			this.sequence = sequence;
+			this.block = block;
+			this.index = index;
+			this.transactionId = transactionId;
+		}
+	}
+
+	/**
+	 * Create a listener that resumes from the checkpoint. A checkpoint at or beyond the current ledger height was
+	 * recorded against a ledger that has since been recreated, so it is discarded and listening starts from the current
+	 * block.
+	 */
+	public CheckpointedEventListener(final Network network, final String chaincodeName,
+			final EventCheckpointer checkpointer) throws GatewayException, IOException {
+		this.network = network;
+		this.chaincodeName = chaincodeName;
+		this.checkpointer = checkpointer;
+
+		long checkpointBlock = checkpointer.getBlockNumber();
+		long height = ChainInfo.getHeight(network);
+		if (checkpointer.discardIfAhead(height)) {
+			System.err.println("Discarding checkpoint at block " + checkpointBlock + ", beyond ledger height " + height);
+		}
+		this.resumeBlock = checkpointer.getBlockNumber();
+		this.resumeIndex = checkpointer.getEventIndex();
+		this.resumeTransactionId = checkpointer.getTransactionId();
+	}
+
+	/**
+	 * Start delivering events to the handler on a background thread. The returned future completes exceptionally if
+	 * the handler throws, in which case the failed event is not checkpointed.
+	 */
+	public CompletableFuture<Void> start(final Consumer<ChaincodeEvent> handler) {
+		return CompletableFuture.runAsync(() -> listen((event, index) -> {
+			handler.accept(event);
+			try {
+				checkpointer.checkpoint(event, index);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}), executor);
+	}
+
+	/**
+	 * Start publishing events to a pipeline on a background thread. The returned future completes exceptionally if
+	 * the pipeline stops accepting events because a handler failed. The pipeline should be closed only after this
+	 * listener, which waits for published events to be processed and checkpoints them when it is closed.
+	 */
+	public CompletableFuture<Void> start(final EventPipeline<ChaincodeEvent> eventPipeline) {
+		pipeline = eventPipeline;
+		checkpointExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "event-checkpoint");
+			thread.setDaemon(true);
+			return thread;
+		});
+		checkpointExecutor.scheduleWithFixedDelay(this::checkpointProcessedQuietly, CHECKPOINT_INTERVAL_MILLIS,
+				CHECKPOINT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+		return CompletableFuture.runAsync(() -> listen((event, index) -> {
+			long sequence = eventPipeline.publish(event);
+			synchronized (published) {
+				published.addLast(new Position(sequence, event.getBlockNumber(), index + 1, event.getTransactionId()));
+			}
+			try {
+				checkpointProcessed();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}), executor);
+	}
+
+	/**
+	 * Start writing events to a file sink on a background thread, formatted as single lines of JSON. The sink should
+	 * use the same checkpointer as this listener, and be closed only after this listener. The returned future
+	 * completes exceptionally if an event cannot be written.
+	 */
+	public CompletableFuture<Void> start(final EventFileSink sink, final Function<ChaincodeEvent, byte[]> format) {
+		return CompletableFuture.runAsync(() -> listen((event, index) -> {
+			try {
+				sink.append(event, index, format.apply(event));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}), executor);
+	}
+
+	/**
+	 * Receives an event together with its index among the events in its block.
+	 */
+	@FunctionalInterface
+	private interface EventDelivery {
+		void accept(ChaincodeEvent event, int index);
+	}
+
+	private void listen(final EventDelivery delivery) {
+		while (!closed) {
+			try {
+				receiveEvents(delivery);
+			} catch (GatewayRuntimeException e) {
+				if (closed) {
+					return;
+				}
+				System.err.println("Chaincode event stream failed, resuming from block " + resumeBlock + ": " + e);
+			}
+
+			if (!closed) {
+				sleep(RECONNECT_DELAY_MILLIS);
+			}
+		}
+	}
+
+	private void receiveEvents(final EventDelivery delivery) {
+		long startBlock = resumeBlock;
+		int handledInStartBlock = resumeIndex;
+		String handledTransactionId = resumeTransactionId;
+
+		events = startBlock < 0
+				? network.getChaincodeEvents(chaincodeName)
+				: network.newChaincodeEventsRequest(chaincodeName).startBlock(startBlock).build().getEvents();
+
+		long currentBlock = -1;
+		int index = 0;
+		while (!closed && events.hasNext()) {
+			ChaincodeEvent event = events.next();
+			if (event.getBlockNumber() != currentBlock) {
+				currentBlock = event.getBlockNumber();
+				index = 0;
+			}
+
+			if (currentBlock == startBlock && index < handledInStartBlock) {
+				if (index == handledInStartBlock - 1 && !event.getTransactionId().equals(handledTransactionId)) {
+					System.err.println("Checkpointed transaction " + handledTransactionId
+							+ " does not match replayed transaction " + event.getTransactionId());
+				}
+				index++;
+				continue;
+			}
+
+			delivery.accept(event, index);
+			index++;
+			resumeBlock = currentBlock;
+			resumeIndex = index;
+			resumeTransactionId = event.getTransactionId();
+		}
+	}
+
+	/**
+	 * Checkpoint the last published event for which it and all earlier events have been processed by the pipeline.
+	 * The checkpoint is written while holding the lock, so that concurrent calls cannot write their positions out of
+	 * order and move the checkpoint backwards.
+	 */
+	private void checkpointProcessed() throws IOException {
+		long completed = pipeline.getCompletedThrough();
+		synchronized (published) {
+			Position last = null;
+			while (!published.isEmpty() && published.peekFirst().sequence <= completed) {
+				last = published.removeFirst();
+			}
+
+			if (last != null) {
+				checkpointer.checkpoint(last.block, last.index, last.transactionId);
+			}
+		}
+	}
+
+	private void checkpointProcessedQuietly() {
+		try {
+			checkpointProcessed();
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to checkpoint processed events: " + e);
+		}
+	}
+
+	private static void sleep(final long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stop listening and, when publishing to a pipeline, wait for published events to be processed and checkpoint
+	 * them. If the calling thread is interrupted, it stops waiting, checkpoints the events processed so far and its
+	 * interrupt status is set.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		if (events != null) {
+			events.close();
+		}
+		executor.shutdownNow();
+		if (checkpointExecutor != null) {
+			checkpointExecutor.shutdownNow();
+		}
+
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+			if (pipeline != null) {
+				checkpointExecutor.awaitTermination(5, TimeUnit.SECONDS);
+				if (!pipeline.awaitCompleted(pipeline.getPublishedCount() - 1, DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+					System.err.println("Not all published events were processed; unprocessed events will be redelivered");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (pipeline != null) {
+			checkpointProcessedQuietly();
+		}
+	}
+}
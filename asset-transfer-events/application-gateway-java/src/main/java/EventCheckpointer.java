@@ -0,0 +1,215 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+
+/**
+ * Memory-mapped record of the position up to which chaincode events have been processed: a block number, the number
+ * of events already processed within that block, and the transaction ID of the last processed event.
+ * <p>
+ * Chaincode events for a block are always delivered in the same order, so a listener resuming from the checkpoint
+ * block skips that many events and continues with the first unprocessed one. Fabric emits at most one chaincode event
+ * per transaction, so the event count is also the index of the next transaction to process among those in the block
+ * that emitted events.
+ * <p>
+ * Each checkpoint is written to the mapped file immediately, where it survives a crash of the application, but the
+ * file is only forced to disk once the sync interval has passed since the last force. A zero interval forces every
+ * checkpoint, while a longer interval trades durability against an operating system crash for lower checkpoint
+ * latency. A background task also forces the last checkpoint once the interval has passed, so that it does not
+ * remain unsynced while no further events arrive. Checkpoints alternate between two slots, each with a sequence
+ * number and checksum, so a torn write leaves the previous checkpoint intact.
+ */
+public final class EventCheckpointer implements AutoCloseable {
+	private static final int MAGIC = 0x46454331; // "FEC1"
+	private static final int HEADER_SIZE = 8;
+	private static final int MAX_TRANSACTION_ID_LENGTH = 128;
+	private static final int SLOT_SIZE = 8 + 8 + 4 + 2 + MAX_TRANSACTION_ID_LENGTH + 4; // sequence, block, index, id, crc
+	private static final int FILE_SIZE = HEADER_SIZE + 2 * SLOT_SIZE;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final long syncIntervalNanos;
+	private final ScheduledExecutorService syncExecutor;
+	private long sequence = 0;
+	private long blockNumber = -1;
+	private int eventIndex = 0;
+	private String transactionId = "";
+	private long lastSyncNanos = System.nanoTime();
+	private boolean dirty = false;
+
+	/**
+	 * Open a checkpoint file, creating it if it does not exist.
+	 *
+	 * @param syncInterval Minimum time between forcing checkpoints to disk.
+	 */
+	public EventCheckpointer(final Path path, final Duration syncInterval) throws IOException {
+		this.syncIntervalNanos = syncInterval.toNanos();
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+
+		if (buffer.getInt(0) == MAGIC) {
+			recover(0);
+			recover(1);
+		} else {
+			buffer.putInt(0, MAGIC);
+			buffer.force();
+		}
+
+		if (syncIntervalNanos > 0) {
+			syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "checkpoint-sync");
+				thread.setDaemon(true);
+				return thread;
+			});
+			syncExecutor.scheduleWithFixedDelay(this::syncIfDue, syncIntervalNanos, syncIntervalNanos,
+					TimeUnit.NANOSECONDS);
+		} else {
+			syncExecutor = null;
+		}
+	}
+
+	private void recover(final int slot) {
+		int offset = HEADER_SIZE + slot * SLOT_SIZE;
+		long slotSequence = buffer.getLong(offset);
+		int idLength = buffer.getShort(offset + 20);
+		if (slotSequence <= sequence || idLength < 0 || idLength > MAX_TRANSACTION_ID_LENGTH
+				|| buffer.getInt(offset + SLOT_SIZE - 4) != checksum(offset)) {
+			return;
+		}
+
+		byte[] id = new byte[idLength];
+		buffer.duplicate().position(offset + 22).get(id);
+
+		sequence = slotSequence;
+		blockNumber = buffer.getLong(offset + 8);
+		eventIndex = buffer.getInt(offset + 16);
+		transactionId = new String(id, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Block number from which to resume listening, or -1 if no events have been checkpointed.
+	 */
+	public synchronized long getBlockNumber() {
+		return blockNumber;
+	}
+
+	/**
+	 * Number of events already processed within the checkpoint block.
+	 */
+	public synchronized int getEventIndex() {
+		return eventIndex;
+	}
+
+	/**
+	 * Transaction ID of the last processed event, or an empty string if no events have been checkpointed.
+	 */
+	public synchronized String getTransactionId() {
+		return transactionId;
+	}
+
+	/**
+	 * Record that an event has been processed, given its position within its block.
+	 */
+	public synchronized void checkpoint(final ChaincodeEvent event, final int indexInBlock) throws IOException {
+		checkpoint(event.getBlockNumber(), indexInBlock + 1, event.getTransactionId());
+	}
+
+	/**
+	 * Record that all events before the given index within a block have been processed.
+	 */
+	public synchronized void checkpoint(final long block, final int index, final String lastTransactionId)
+			throws IOException {
+		byte[] id = lastTransactionId.getBytes(StandardCharsets.UTF_8);
+		if (id.length > MAX_TRANSACTION_ID_LENGTH) {
+			throw new IllegalArgumentException("Transaction ID too long: " + lastTransactionId);
+		}
+
+		sequence++;
+		int offset = HEADER_SIZE + (int) (sequence % 2) * SLOT_SIZE;
+		buffer.putLong(offset, sequence);
+		buffer.putLong(offset + 8, block);
+		buffer.putInt(offset + 16, index);
+		buffer.putShort(offset + 20, (short) id.length);
+		buffer.duplicate().position(offset + 22).put(id);
+		buffer.putInt(offset + SLOT_SIZE - 4, checksum(offset));
+
+		blockNumber = block;
+		eventIndex = index;
+		transactionId = lastTransactionId;
+		dirty = true;
+
+		if (System.nanoTime() - lastSyncNanos >= syncIntervalNanos) {
+			sync();
+		}
+	}
+
+	/**
+	 * Discard the checkpoint if it is at or beyond the given ledger height, in which case it was recorded against a
+	 * ledger that has since been recreated.
+	 *
+	 * @return {@code true} if the checkpoint was discarded.
+	 */
+	public synchronized boolean discardIfAhead(final long ledgerHeight) throws IOException {
+		if (blockNumber < ledgerHeight) {
+			return false;
+		}
+
+		checkpoint(-1, 0, "");
+		sync();
+		return true;
+	}
+
+	/**
+	 * Force any checkpoint not yet written to disk.
+	 */
+	public synchronized void sync() throws IOException {
+		if (dirty) {
+			buffer.force();
+			dirty = false;
+		}
+		lastSyncNanos = System.nanoTime();
+	}
+
+	private synchronized void syncIfDue() {
+		if (!dirty || System.nanoTime() - lastSyncNanos < syncIntervalNanos || !channel.isOpen()) {
+			return;
+		}
+
+		try {
+			sync();
+		} catch (IOException e) {
+			System.err.println("Failed to sync checkpoint: " + e);
+		}
+	}
+
+	private int checksum(final int offset) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate().position(offset).limit(offset + SLOT_SIZE - 4));
+		return (int) crc.getValue();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (syncExecutor != null) {
+			syncExecutor.shutdownNow();
+		}
+		sync();
+		channel.close();
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+
+/**
+ * Writes events as newline-delimited JSON to a series of rolling files, with the position of each event checkpointed
+ * only once it is durably written, so that each event appears in the files exactly once across restarts.
+ * <p>
+ * Lines are collected in a direct buffer and written through a {@link FileChannel} when the buffer fills. Written
+ * data is forced to disk as a group commit, once enough bytes have accumulated or the sync interval has passed, and
+ * the last event in the group is then recorded with the {@link EventCheckpointer}. A file is rolled over to the next
+ * once it reaches the maximum size or age.
+ * <p>
+ * Each data file {@code events-NNNNNNNN.ndjson} has an index sidecar {@code events-NNNNNNNN.idx} holding a fixed-size
+ * entry for each event: its block number, index within the block, and the offset of the end of its line. Entries are
+ * in event order, so the sidecar can be searched to find where a block starts. When the sink is opened, events
+ * written after the last checkpoint, which will be delivered again by the event listener, are truncated from the
+ * latest file using its sidecar. If the directory holds events but there is no checkpoint, for example because the
+ * checkpoint file was removed or discarded, the sink refuses to open rather than truncate events already exported.
+ */
+public final class EventFileSink implements AutoCloseable {
+	private static final String FILE_PREFIX = "events-";
+	private static final String DATA_SUFFIX = ".ndjson";
+	private static final String INDEX_SUFFIX = ".idx";
+	private static final int INDEX_ENTRY_SIZE = 8 + 4 + 8; // block, index, end offset
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final Path directory;
+	private final EventCheckpointer checkpointer;
+	private final long groupCommitBytes;
+	private final long syncIntervalNanos;
+	private final long maxFileBytes;
+	private final long maxFileAgeNanos;
+	private final ByteBuffer dataBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final ByteBuffer indexBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE / 64 * INDEX_ENTRY_SIZE);
+	private final ScheduledExecutorService syncExecutor;
+	private int fileNumber;
+	private FileChannel data;
+	private FileChannel index;
+	private long fileSize;
+	private long fileOpenedNanos;
+	private long unsyncedBytes = 0;
+	private long lastSyncNanos = System.nanoTime();
+	private long pendingBlock = -1;
+	private int pendingIndex;
+	private String pendingTransactionId;
+	private long eventCount = 0;
+	private long syncCount = 0;
+	private long rollCount = 0;
+
+	/**
+	 * @param directory Directory containing the data and index files.
+	 * @param checkpointer Records the last durably written event. Should not be used to checkpoint by anything else.
+	 * @param groupCommitBytes Number of bytes written after which data is forced to disk.
+	 * @param syncInterval Maximum time that written data remains unforced.
+	 * @param maxFileBytes Size at which to roll over to a new file.
+	 * @param maxFileAge Age at which to roll over to a new file.
+	 */
+	public EventFileSink(final Path directory, final EventCheckpointer checkpointer, final long groupCommitBytes,
+			final Duration syncInterval, final long maxFileBytes, final Duration maxFileAge) throws IOException {
+		this.directory = directory;
+		this.checkpointer = checkpointer;
+		this.groupCommitBytes = groupCommitBytes;
+		this.syncIntervalNanos = syncInterval.toNanos();
+		this.maxFileBytes = maxFileBytes;
+		this.maxFileAgeNanos = maxFileAge.toNanos();
+
+		Files.createDirectories(directory);
+		fileNumber = Math.max(1, findLatestFileNumber());
+		openFile();
+		if (checkpointer.getBlockNumber() < 0 && (fileNumber > 1 || data.size() > 0)) {
+			data.close();
+			index.close();
+			throw new IOException("Event files in " + directory + " have no checkpoint; move them elsewhere to export "
+					+ "events from the start");
+		}
+		truncateUncheckpointed();
+
+		syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "event-sink-sync");
+			thread.setDaemon(true);
+			return thread;
+		});
+		syncExecutor.scheduleWithFixedDelay(this::commitIfDue, syncIntervalNanos, syncIntervalNanos,
+				TimeUnit.NANOSECONDS);
+	}
+
+	private int findLatestFileNumber() throws IOException {
+		int latest = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + DATA_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				String number = name.substring(FILE_PREFIX.length(), name.length() - DATA_SUFFIX.length());
+				latest = Math.max(latest, Integer.parseInt(number));
+			}
+		}
+		return latest;
+	}
+
+	private void openFile() throws IOException {
+		String name = String.format("%s%08d", FILE_PREFIX, fileNumber);
+		data = FileChannel.open(directory.resolve(name + DATA_SUFFIX), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		index = FileChannel.open(directory.resolve(name + INDEX_SUFFIX), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		fileSize = data.size();
+		data.position(fileSize);
+		index.position(index.size() - index.size() % INDEX_ENTRY_SIZE);
+		fileOpenedNanos = System.nanoTime();
+	}
+
+	/**
+	 * Remove events from the latest file that were written but not checkpointed before the application stopped.
+	 */
+	private void truncateUncheckpointed() throws IOException {
+		long checkpointBlock = checkpointer.getBlockNumber();
+		int checkpointIndex = checkpointer.getEventIndex();
+
+		ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+		long keptEntries = 0;
+		long keptBytes = 0;
+		for (long offset = 0; offset + INDEX_ENTRY_SIZE <= index.size(); offset += INDEX_ENTRY_SIZE) {
+			entry.clear();
+			index.read(entry, offset);
+			long block = entry.getLong(0);
+			int eventIndex = entry.getInt(8);
+			long endOffset = entry.getLong(12);
+
+			boolean checkpointed = block < checkpointBlock || block == checkpointBlock && eventIndex < checkpointIndex;
+			if (!checkpointed || endOffset > data.size()) {
+				break;
+			}
+			keptEntries++;
+			keptBytes = endOffset;
+		}
+
+		if (keptBytes < data.size() || keptEntries * INDEX_ENTRY_SIZE < index.size()) {
+			System.err.println("Truncating " + (data.size() - keptBytes) + " uncheckpointed bytes from event file "
+					+ fileNumber);
+			data.truncate(keptBytes);
+			index.truncate(keptEntries * INDEX_ENTRY_SIZE);
+			data.force(true);
+			index.force(true);
+		}
+		fileSize = keptBytes;
+		data.position(keptBytes);
+		index.position(keptEntries * INDEX_ENTRY_SIZE);
+	}
+
+	/**
+	 * Append an event as one line of the current file.
+	 *
+	 * @param indexInBlock Index of the event among the events in its block.
+	 * @param json Event content, which must not contain line breaks.
+	 */
+	public synchronized void append(final ChaincodeEvent event, final int indexInBlock, final byte[] json)
+			throws IOException {
+		if (fileSize > 0 && (fileSize >= maxFileBytes || System.nanoTime() - fileOpenedNanos >= maxFileAgeNanos)) {
+			roll();
+		}
+
+		int length = json.length + 1;
+		if (dataBuffer.remaining() < length || indexBuffer.remaining() < INDEX_ENTRY_SIZE) {
+			writeBuffers();
+		}
+		if (length > dataBuffer.capacity()) {
+			data.write(ByteBuffer.wrap(json));
+			data.write(ByteBuffer.wrap(new byte[] {'\n'}));
+		} else {
+			dataBuffer.put(json).put((byte) '\n');
+		}
+
+		fileSize += length;
+		indexBuffer.putLong(event.getBlockNumber()).putInt(indexInBlock).putLong(fileSize);
+		unsyncedBytes += length;
+		pendingBlock = event.getBlockNumber();
+		pendingIndex = indexInBlock + 1;
+		pendingTransactionId = event.getTransactionId();
+		eventCount++;
+
+		if (unsyncedBytes >= groupCommitBytes) {
+			commit();
+		}
+	}
+
+	private void writeBuffers() throws IOException {
+		dataBuffer.flip();
+		while (dataBuffer.hasRemaining()) {
+			data.write(dataBuffer);
+		}
+		dataBuffer.clear();
+
+		indexBuffer.flip();
+		while (indexBuffer.hasRemaining()) {
+			index.write(indexBuffer);
+		}
+		indexBuffer.clear();
+	}
+
+	/**
+	 * Write and force all appended events to disk, then checkpoint the last of them.
+	 */
+	public synchronized void commit() throws IOException {
+		writeBuffers();
+		if (pendingBlock < 0) {
+			return;
+		}
+
+		// Data is forced before the index, so index entries never refer to data that was not written
+		data.force(false);
+		index.force(false);
+		checkpointer.checkpoint(pendingBlock, pendingIndex, pendingTransactionId);
+		checkpointer.sync();
+
+		pendingBlock = -1;
+		unsyncedBytes = 0;
+		lastSyncNanos = System.nanoTime();
+		syncCount++;
+	}
+
+	private synchronized void commitIfDue() {
+		if (pendingBlock < 0 || System.nanoTime() - lastSyncNanos < syncIntervalNanos || !data.isOpen()) {
+			return;
+		}
+
+		try {
+			commit();
+		} catch (IOException e) {
+			System.err.println("Failed to commit event file: " + e);
+		}
+	}
+
+	private void roll() throws IOException {
+		commit();
+		data.close();
+		index.close();
+
+		fileNumber++;
+		openFile();
+		rollCount++;
+	}
+
+	public synchronized String summary() {
+		return String.format("Events: %d, group commits: %d, files rolled: %d, current file: %d%n",
+				eventCount, syncCount, rollCount, fileNumber);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		syncExecutor.shutdownNow();
+		commit();
+		data.close();
+		index.close();
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.Status;
+
+/**
+ * End-to-end latency from submitting a transaction until the consuming application receives its chaincode event,
+ * which is the delay users of an event-driven application actually see. Submitted transactions are correlated with
+ * their commit status and chaincode event by transaction ID.
+ * <p>
+ * The commit to event stage is measured from when the submitting client observed the commit status, so it is zero
+ * if the event was received first. Transactions whose event is not received within the expiry time, for example
+ * because they emit no event, are discarded and counted as expired.
+ */
+public final class EventLatencyTracker {
+	public enum Stage {
+		SUBMIT_TO_COMMIT,
+		COMMIT_TO_EVENT,
+		SUBMIT_TO_EVENT
+	}
+
+	private final long expiryNanos;
+	private final int maxPending;
+	private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+	private final Map<Stage, Histogram> latencies = new EnumMap<>(Stage.class);
+	private final LongAdder unmatchedEvents = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+
+	/**
+	 * Times observed for a submitted transaction, or zero if not yet observed.
+	 */
+	private static final class Pending {
+		private final long submitNanos;
+		private long commitNanos;
+		private long eventNanos;
+
+		Pending(final long submitNanos) {
+			this.submitNanos = submitNanos;
+		}
+	}
+
+	/**
+	 * @param expiry Time after submit at which a transaction whose event has not been received is discarded.
+	 * @param maxPending Number of tracked transactions above which expired transactions are discarded.
+	 */
+	public EventLatencyTracker(final Duration expiry, final int maxPending) {
+		this.expiryNanos = expiry.toNanos();
+		this.maxPending = maxPending;
+		for (Stage stage : Stage.values()) {
+			latencies.put(stage, new Histogram());
+		}
+	}
+
+	/**
+	 * Start tracking a transaction once it has been submitted.
+	 *
+	 * @param submitNanos {@link System#nanoTime()} before the transaction was submitted.
+	 */
+	public void submitted(final String transactionId, final long submitNanos) {
+		if (pending.size() >= maxPending) {
+			removeExpired(System.nanoTime());
+		}
+		pending.put(transactionId, new Pending(submitNanos));
+	}
+
+	/**
+	 * Record the commit status of a submitted transaction. Transactions that failed to commit emit no event and are
+	 * no longer tracked.
+	 */
+	public void committed(final Status status) {
+		long now = System.nanoTime();
+		Pending transaction = pending.get(status.getTransactionId());
+		if (transaction == null) {
+			return;
+		}
+		if (!status.isSuccessful()) {
+			pending.remove(status.getTransactionId());
+			return;
+		}
+
+		synchronized (transaction) {
+			transaction.commitNanos = now;
+			latencies.get(Stage.SUBMIT_TO_COMMIT).record(now - transaction.submitNanos);
+			if (transaction.eventNanos != 0) {
+				latencies.get(Stage.COMMIT_TO_EVENT).record(0);
+				pending.remove(status.getTransactionId());
+			}
+		}
+	}
+
+	/**
+	 * Record receipt of a chaincode event by the consuming application. Events from transactions not submitted
+	 * through this tracker are counted as unmatched.
+	 */
+	public void delivered(final ChaincodeEvent event) {
+		long now = System.nanoTime();
+		Pending transaction = pending.get(event.getTransactionId());
+		if (transaction == null) {
+			unmatchedEvents.increment();
+			return;
+		}
+
+		synchronized (transaction) {
+			if (transaction.eventNanos != 0) {
+				return;
+			}
+			transaction.eventNanos = now;
+			latencies.get(Stage.SUBMIT_TO_EVENT).record(now - transaction.submitNanos);
+			if (transaction.commitNanos != 0) {
+				latencies.get(Stage.COMMIT_TO_EVENT).record(now - transaction.commitNanos);
+				pending.remove(event.getTransactionId());
+			}
+		}
+	}
+
+	private void removeExpired(final long now) {
+		pending.entrySet().removeIf(entry -> {
+			boolean isExpired = now - entry.getValue().submitNanos >= expiryNanos;
+			if (isExpired) {
+				expired.increment();
+			}
+			return isExpired;
+		});
+	}
+
+	public Histogram getLatency(final Stage stage) {
+		return latencies.get(stage);
+	}
+
+	/**
+	 * Metrics in Prometheus text exposition format.
+	 */
+	public String render() {
+		StringBuilder result = new StringBuilder();
+
+		result.append("# TYPE gateway_event_latency_seconds summary\n");
+		latencies.forEach((stage, histogram) -> {
+			String labels = "stage=\"" + stage.name().toLowerCase() + "\"";
+			for (double quantile : new double[] { 0.5, 0.95, 0.99 }) {
+				result.append(String.format("gateway_event_latency_seconds{%s,quantile=\"%s\"} %s%n", labels,
+						quantile, histogram.getValueAtPercentile(quantile * 100) * 1e-9));
+			}
+			result.append(String.format("gateway_event_latency_seconds_sum{%s} %.6f%n", labels,
+					histogram.getSum() / 1e9));
+			result.append(String.format("gateway_event_latency_seconds_count{%s} %d%n", labels,
+					histogram.getCount()));
+		});
+
+		result.append("# TYPE gateway_event_unmatched_total counter\n");
+		result.append(String.format("gateway_event_unmatched_total %d%n", unmatchedEvents.sum()));
+		result.append("# TYPE gateway_event_expired_total counter\n");
+		result.append(String.format("gateway_event_expired_total %d%n", expired.sum()));
+
+		return result.toString();
+	}
+
+	/**
+	 * Human readable per-stage latency summary for logging.
+	 */
+	public String summary() {
+		StringBuilder result = new StringBuilder();
+
+		latencies.forEach((stage, histogram) -> result.append(String.format(
+				"- %s: count=%d, mean=%dms, p50=%dms, p95=%dms, p99=%dms, max=%dms%n",
+				stage.name().toLowerCase(), histogram.getCount(), toMillis((long) histogram.getMean()),
+				toMillis(histogram.getValueAtPercentile(50)), toMillis(histogram.getValueAtPercentile(95)),
+				toMillis(histogram.getValueAtPercentile(99)), toMillis(histogram.getMax()))));
+		result.append(String.format("- pending: %d, expired: %d, unmatched events: %d%n",
+				pending.size(), expired.sum(), unmatchedEvents.sum()));
+
+		return result.toString();
+	}
+
+	private static long toMillis(final long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Processes events on a number of worker threads while preserving the order of events for the same key. Each event
+ * is assigned to a partition by a hash of its key, typically the asset ID, and each partition has a bounded
+ * single-producer, single-consumer ring buffer drained by its own worker. Events for different keys are processed in
+ * parallel; events for the same key are processed one at a time, in the order they were published.
+ * <p>
+ * Events must be published from a single thread, normally the one reading the event stream. When a partition's
+ * buffer is full, publishing blocks until the worker catches up, so a slow handler slows the reading of the event
+ * stream rather than exhausting memory.
+ * <p>
+ * Each published event is given a sequence number. {@link #getCompletedThrough()} returns the highest sequence number
+ * for which that event and all earlier ones have been processed, which is the point up to which it is safe to
+ * checkpoint. If a handler throws, its worker stops so that later events for the same keys are not processed out of
+ * order, and further publishing fails.
+ */
+public final class EventPipeline<E> implements AutoCloseable {
+	private static final int SPINS_BEFORE_PARK = 100;
+	private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private final Function<E, String> keyOf;
+	private final Consumer<E> handler;
+	private final List<Partition> partitions;
+	private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+	private final LongAdder processed = new LongAdder();
+	private final LongAdder queueNanos = new LongAdder();
+	private final AtomicLong maxQueueNanos = new AtomicLong();
+	private volatile long nextSequence = 0;
+	private volatile boolean closed = false;
+	private long backpressureNanos = 0;
+
+	/**
+	 * @param workers Number of partitions, each processed by its own worker thread.
+	 * @param capacity Capacity of each partition's buffer, rounded up to a power of two.
+	 * @param keyOf Extracts the key whose events must be processed in order.
+	 * @param handler Processes an event.
+	 */
+	public EventPipeline(final int workers, final int capacity, final Function<E, String> keyOf,
+			final Consumer<E> handler) {
+		this.keyOf = keyOf;
+		this.handler = handler;
+
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		partitions = new ArrayList<>(workers);
+		for (int i = 0; i < workers; i++) {
+			Partition partition = new Partition(size);
+			partitions.add(partition);
+
+			Thread worker = new Thread(partition::drain, "event-pipeline-" + i);
+			worker.setDaemon(true);
+			partition.worker = worker;
+			worker.start();
+		}
+	}
+
+	/**
+	 * Add an event to its partition's buffer, waiting while the buffer is full.
+	 *
+	 * @return Sequence number of the event.
+	 */
+	public long publish(final E event) {
+		if (closed) {
+			throw new IllegalStateException("Event pipeline is closed");
+		}
+
+		int hash = keyOf.apply(event).hashCode();
+		Partition partition = partitions.get(Math.floorMod(hash ^ (hash >>> 16), partitions.size()));
+		long sequence = nextSequence;
+
+		if (partition.isFull()) {
+			long start = System.nanoTime();
+			while (partition.isFull()) {
+				checkFailure();
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+			backpressureNanos += System.nanoTime() - start;
+		}
+		checkFailure();
+
+		partition.offer(event, sequence);
+		nextSequence = sequence + 1;
+		return sequence;
+	}
+
+	/**
+	 * Highest sequence number for which that event and all earlier events have been processed, or -1 if none have.
+	 */
+	public long getCompletedThrough() {
+		long completed = nextSequence - 1;
+		for (Partition partition : partitions) {
+			completed = Math.min(completed, partition.getOldestPendingSequence() - 1);
+		}
+		return completed;
+	}
+
+	/**
+	 * Wait until all events up to and including the given sequence number have been processed.
+	 *
+	 * @return {@code true} if they were processed within the timeout.
+	 */
+	public boolean awaitCompleted(final long sequence, final long timeout, final TimeUnit unit) {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (getCompletedThrough() < sequence) {
+			if (failure.get() != null || System.nanoTime() >= deadline) {
+				return false;
+			}
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+		return true;
+	}
+
+	public long getPublishedCount() {
+		return nextSequence;
+	}
+
+	public long getProcessedCount() {
+		return processed.sum();
+	}
+
+	/**
+	 * Number of events published but not yet processed, which is how far processing lags behind the event stream.
+	 */
+	public long getLagCount() {
+		return nextSequence - processed.sum();
+	}
+
+	/**
+	 * Total time the publishing thread has spent waiting for space in a full buffer.
+	 */
+	public long getBackpressureNanos() {
+		return backpressureNanos;
+	}
+
+	/**
+	 * Mean time events have waited in a buffer before being handled.
+	 */
+	public double getMeanQueueNanos() {
+		long count = processed.sum();
+		return count > 0 ? (double) queueNanos.sum() / count : 0;
+	}
+
+	public long getMaxQueueNanos() {
+		return maxQueueNanos.get();
+	}
+
+	public String summary() {
+		long count = processed.sum();
+		StringBuilder result = new StringBuilder();
+		result.append(String.format("Published: %d, processed: %d, lag: %d events%n",
+				nextSequence, count, nextSequence - count));
+		result.append(String.format("Queue time: mean %.3fms, max %.3fms%n",
+				getMeanQueueNanos() / 1e6, maxQueueNanos.get() / 1e6));
+		result.append(String.format("Backpressure wait: %.3fs%n", backpressureNanos / 1e9));
+
+		result.append("Partition depth:");
+		for (Partition partition : partitions) {
+			result.append(' ').append(partition.size());
+		}
+		result.append('\n');
+
+		return result.toString();
+	}
+
+	private void checkFailure() {
+		RuntimeException e = failure.get();
+		if (e != null) {
+			throw new IllegalStateException("Event handler failed", e);
+		}
+	}
+
+	/**
+	 * Stop accepting events and wait for those already published to be processed. If the calling thread is
+	 * interrupted, it stops waiting and its interrupt status is set.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		partitions.forEach(partition -> LockSupport.unpark(partition.worker));
+		try {
+			for (Partition partition : partitions) {
+				partition.worker.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private final class Partition {
+		private final Object[] events;
+		private final long[] sequences;
+		private final long[] publishNanos;
+		private final int mask;
+		private volatile long head = 0; // Next slot to write, advanced only by the publisher
+		private volatile long tail = 0; // Next slot to process, advanced only by the worker
+		private volatile boolean waiting = false;
+		private Thread worker;
+
+		Partition(final int size) {
+			events = new Object[size];
+			sequences = new long[size];
+			publishNanos = new long[size];
+			mask = size - 1;
+		}
+
+		boolean isFull() {
+			return head - tail >= events.length;
+		}
+
+		int size() {
+			return (int) (head - tail);
+		}
+
+		void offer(final E event, final long sequence) {
+			int slot = (int) (head & mask);
+			events[slot] = event;
+			sequences[slot] = sequence;
+			publishNanos[slot] = System.nanoTime();
+			head = head + 1;
+
+			if (waiting) {
+				LockSupport.unpark(worker);
+			}
+		}
+
+		long getOldestPendingSequence() {
+			while (true) {
+				long oldest = tail;
+				if (oldest >= head) {
+					return Long.MAX_VALUE;
+				}
+
+				long sequence = sequences[(int) (oldest & mask)];
+				VarHandle.loadLoadFence();
+				// If the worker moved on, the slot may since have been reused for a later event
+				if (tail == oldest) {
+					return sequence;
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		void drain() {
+			int idle = 0;
+			while (true) {
+				long next = tail;
+				if (next == head) {
+					if (closed) {
+						return;
+					}
+					idle = awaitEvent(idle);
+					continue;
+				}
+				idle = 0;
+
+				int slot = (int) (next & mask);
+				long waited = System.nanoTime() - publishNanos[slot];
+				queueNanos.add(waited);
+				maxQueueNanos.accumulateAndGet(waited, Math::max);
+
+				try {
+					handler.accept((E) events[slot]);
+				} catch (RuntimeException e) {
+					failure.compareAndSet(null, e);
+					System.err.println("Event handler failed, stopping partition: " + e);
+					return;
+				}
+
+				events[slot] = null;
+				processed.increment();
+				tail = next + 1;
+			}
+		}
+
+		private int awaitEvent(final int idle) {
+			if (idle < SPINS_BEFORE_PARK) {
+				Thread.onSpinWait();
+				return idle + 1;
+			}
+
+			waiting = true;
+			if (tail == head && !closed) {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+			waiting = false;
+			return idle;
+		}
+	}
+}
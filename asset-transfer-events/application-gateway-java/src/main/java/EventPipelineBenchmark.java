@@ -0,0 +1,73 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures {@link EventPipeline} throughput with a synthetic event source as the number of workers grows, and checks
+ * that events for each asset are handled in the order they were published. Each event handler waits for a fixed
+ * time, standing in for a write to a downstream store.
+ * <p>
+ * Usage: {@code ./gradlew eventPipelineBenchmark --args="[events] [assets] [handler micros] [buffer capacity]"}
+ */
+public final class EventPipelineBenchmark {
+	private static final int MAX_WORKERS = 64;
+
+	private EventPipelineBenchmark() {
+		// Private constructor to prevent instantiation
+	}
+
+	private static final class SyntheticEvent {
+		private final String assetId;
+		private final long assetSequence;
+
+		SyntheticEvent(final String assetId, final long assetSequence) {
+			this.assetId = assetId;
+			this.assetSequence = assetSequence;
+		}
+	}
+
+	public static void main(final String[] args) throws Exception {
+		int eventCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+		int assetCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+		long handlerNanos = TimeUnit.MICROSECONDS.toNanos(args.length > 2 ? Long.parseLong(args[2]) : 20);
+		int capacity = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+
+		System.out.println("workers, events/second, mean queue ms, max queue ms, backpressure s, ordering errors");
+		for (int workers = 1; workers <= MAX_WORKERS; workers *= 2) {
+			Map<String, Long> lastSequences = new ConcurrentHashMap<>();
+			LongAdder orderingErrors = new LongAdder();
+
+			EventPipeline<SyntheticEvent> pipeline = new EventPipeline<>(workers, capacity, event -> event.assetId,
+					event -> {
+						Long previous = lastSequences.put(event.assetId, event.assetSequence);
+						if (previous != null && previous >= event.assetSequence) {
+							orderingErrors.increment();
+						}
+						if (handlerNanos > 0) {
+							LockSupport.parkNanos(handlerNanos);
+						}
+					});
+
+			long[] assetSequences = new long[assetCount];
+			long start = System.nanoTime();
+			for (int i = 0; i < eventCount; i++) {
+				int asset = (int) ((i * 2654435761L) % assetCount);
+				pipeline.publish(new SyntheticEvent("asset" + asset, assetSequences[asset]++));
+			}
+			pipeline.close();
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.printf("%d, %.0f, %.3f, %.3f, %.3f, %d%n", workers, eventCount / seconds,
+					pipeline.getMeanQueueNanos() / 1e6, pipeline.getMaxQueueNanos() / 1e6,
+					pipeline.getBackpressureNanos() / 1e9, orderingErrors.sum());
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.gson.JsonObject;
+import io.grpc.ManagedChannel;
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.Network;
+
+/**
+ * Continuously exports asset events to rolling newline-delimited JSON files using an {@link EventFileSink}, with the
+ * full state of the asset after each event. The export is checkpointed in the output directory, so it can be stopped
+ * and restarted without missing or duplicating events.
+ * <p>
+ * Usage: {@code ./gradlew exportEvents --args="<output directory> [max file MB] [max file minutes]"}
+ */
+public final class ExportEvents {
+	private static final String channelName = "mychannel";
+	private static final String chaincodeName = "events";
+	private static final long DEFAULT_MAX_FILE_MB = 64;
+	private static final long DEFAULT_MAX_FILE_MINUTES = 60;
+	private static final long GROUP_COMMIT_BYTES = 256 * 1024;
+	private static final Duration SYNC_INTERVAL = Duration.ofMillis(200);
+
+	private final AssetEventDecoder assets = new AssetEventDecoder();
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: ExportEvents <output directory> [max file MB] [max file minutes]");
+			System.exit(1);
+		}
+
+		Path directory = Paths.get(args[0]);
+		long maxFileBytes = (args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_MAX_FILE_MB) * 1024 * 1024;
+		Duration maxFileAge = Duration.ofMinutes(args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_MAX_FILE_MINUTES);
+
+		ManagedChannel channel = Connections.newGrpcConnection();
+		Gateway.Builder builder = Gateway.newInstance()
+				.identity(Connections.newIdentity())
+				.signer(Connections.newSigner())
+				.connection(channel);
+
+		Files.createDirectories(directory);
+		EventCheckpointer checkpointer = new EventCheckpointer(directory.resolve("checkpoint"), SYNC_INTERVAL);
+		Gateway gateway = builder.connect();
+		Network network = gateway.getNetwork(channelName);
+		// The listener discards a checkpoint left from a previous network, so it is created before the sink reads it
+		CheckpointedEventListener listener = new CheckpointedEventListener(network, chaincodeName, checkpointer);
+		EventFileSink sink = new EventFileSink(directory, checkpointer, GROUP_COMMIT_BYTES, SYNC_INTERVAL,
+				maxFileBytes, maxFileAge);
+
+		// The listener must stop delivering events before the sink makes its final commit
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try (checkpointer; sink; gateway; listener) {
+				System.out.print(sink.summary());
+			} catch (Exception e) {
+				System.err.println("Failed to close event export: " + e);
+			} finally {
+				channel.shutdownNow();
+			}
+		}, "event-export-shutdown"));
+
+		System.out.println("Exporting events to " + directory + " from block " + checkpointer.getBlockNumber()
+				+ "; press Ctrl-C to stop");
+		CompletableFuture<Void> export = listener.start(sink, new ExportEvents()::format);
+		export.join();
+	}
+
+	private byte[] format(final ChaincodeEvent event) {
+		AssetEventDecoder.Change change = AssetEventDecoder.parse(event.getEventName(), event.getPayload());
+		AssetEventDecoder.Change state;
+		try {
+			state = assets.apply(change);
+		} catch (IllegalStateException e) {
+			// Compact events for assets created before the export started can only be written with the changed fields
+			state = change;
+		}
+
+		JsonObject line = new JsonObject();
+		line.addProperty("block", event.getBlockNumber());
+		line.addProperty("transactionId", event.getTransactionId());
+		line.addProperty("event", event.getEventName());
+		line.add("asset", state.toJsonObject());
+		return line.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Publishes client metrics, both on a small HTTP endpoint that a Prometheus server can scrape and as a periodic
+ * summary written to the console.
+ * <p>
+ * This is a deliberate copy of the class of the same name in the asset-transfer-basic Java application, since each
+ * sample application is built on its own and they share no code.
+ */
+public final class MetricsReporter implements AutoCloseable {
+	private final List<Supplier<String>> sources;
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "metrics-reporter");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private HttpServer server;
+
+	/**
+	 * @param sources Suppliers of metrics text, each called on every scrape or log interval.
+	 */
+	public MetricsReporter(final List<Supplier<String>> sources) {
+		this.sources = sources;
+	}
+
+	/**
+	 * Serve the current metrics on {@code http://<host>:<port>/metrics}.
+	 */
+	public void serveHttp(final int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.setExecutor(scheduler);
+		server.createContext("/metrics", exchange -> {
+			byte[] body = collect().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+	}
+
+	/**
+	 * Print a summary of the current metrics at a fixed interval.
+	 */
+	public void logEvery(final Duration interval, final List<Supplier<String>> summaries) {
+		scheduler.scheduleAtFixedRate(() -> {
+			StringBuilder text = new StringBuilder("\n*** Metrics summary:\n");
+			summaries.forEach(summary -> text.append(summary.get()));
+			System.out.print(text);
+		}, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	private String collect() {
+		StringBuilder text = new StringBuilder();
+		sources.forEach(source -> text.append(source.get()));
+		return text.toString();
+	}
+
+	@Override
+	public void close() {
+		if (server != null) {
+			server.stop(0);
+		}
+		scheduler.shutdownNow();
+	}
+}
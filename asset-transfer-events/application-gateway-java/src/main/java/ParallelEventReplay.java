@@ -0,0 +1,203 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.protos.common.Block;
+
+/**
+ * Replays the chaincode events in a range of blocks by splitting the range into segments that are read and decoded
+ * concurrently, then delivering the decoded events to a consumer in strict block and transaction order.
+ * <p>
+ * Each segment is read from its own block event stream, since a chaincode event stream gives no indication that a
+ * segment has ended when later blocks contain no events for the chaincode. Chaincode events are extracted from the
+ * valid transactions in each block, then passed to the decode function on the segment's thread. Decoded events are
+ * held in a bounded buffer per segment until the consumer has received all events from earlier segments, so a slow
+ * consumer pauses reading rather than exhausting memory. If a segment's event stream fails, reading resumes from the
+ * next unread block in that segment.
+ *
+ * @param <T> Type of decoded events.
+ */
+public final class ParallelEventReplay<T> {
+	private static final long RECONNECT_DELAY_MILLIS = 1000;
+	private static final int SEGMENT_BUFFER_SIZE = 1024;
+	private static final Object END = new Object();
+
+	private final Network network;
+	private final String chaincodeName;
+	private final long segmentBlocks;
+	private final int parallelism;
+	private final Function<ChaincodeEvent, T> decoder;
+	private final LongAdder blockCount = new LongAdder();
+	private final LongAdder eventCount = new LongAdder();
+	private final LongAdder reconnectCount = new LongAdder();
+
+	/**
+	 * @param segmentBlocks Number of blocks in each segment.
+	 * @param parallelism Number of segments read at the same time.
+	 * @param decoder Decodes an event, or returns {@code null} to skip it. Called concurrently for different segments.
+	 */
+	public ParallelEventReplay(final Network network, final String chaincodeName, final long segmentBlocks,
+			final int parallelism, final Function<ChaincodeEvent, T> decoder) {
+		if (segmentBlocks < 1 || parallelism < 1) {
+			throw new IllegalArgumentException("Segment size and parallelism must be positive");
+		}
+
+		this.network = network;
+		this.chaincodeName = chaincodeName;
+		this.segmentBlocks = segmentBlocks;
+		this.parallelism = parallelism;
+		this.decoder = decoder;
+	}
+
+	/**
+	 * Replay events from the start block to the end block inclusive, delivering decoded events to the consumer on the
+	 * calling thread. The end block should already be committed, since reading waits for blocks not yet committed.
+	 */
+	public void replay(final long startBlock, final long endBlock, final Consumer<T> consumer)
+			throws InterruptedException {
+		List<Segment> segments = new ArrayList<>();
+		for (long first = startBlock; first <= endBlock; first += segmentBlocks) {
+			segments.add(new Segment(first, Math.min(first + segmentBlocks - 1, endBlock)));
+		}
+
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService readers = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "event-replay-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try {
+			// Segments are started in order, so the segment being consumed has always started
+			segments.forEach(segment -> readers.execute(segment::read));
+			for (Segment segment : segments) {
+				segment.drainTo(consumer);
+			}
+		} finally {
+			segments.forEach(Segment::cancel);
+			readers.shutdownNow();
+			readers.awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+
+	public String summary() {
+		return String.format("Blocks: %d, events: %d, reconnects: %d%n",
+				blockCount.sum(), eventCount.sum(), reconnectCount.sum());
+	}
+
+	private final class Segment {
+		private final long firstBlock;
+		private final long lastBlock;
+		private final BlockingQueue<Object> decoded = new ArrayBlockingQueue<>(SEGMENT_BUFFER_SIZE);
+		private volatile CloseableIterator<Block> blocks;
+		private volatile boolean cancelled = false;
+
+		Segment(final long firstBlock, final long lastBlock) {
+			this.firstBlock = firstBlock;
+			this.lastBlock = lastBlock;
+		}
+
+		void read() {
+			try {
+				long nextBlock = firstBlock;
+				while (nextBlock <= lastBlock && !cancelled) {
+					try (CloseableIterator<Block> iter = network.newBlockEventsRequest()
+							.startBlock(nextBlock)
+							.build()
+							.getEvents()) {
+						blocks = iter;
+						while (nextBlock <= lastBlock && iter.hasNext()) {
+							Block block = iter.next();
+							readBlock(block);
+							nextBlock = block.getHeader().getNumber() + 1;
+						}
+					} catch (GatewayRuntimeException e) {
+						if (cancelled) {
+							return;
+						}
+						reconnectCount.increment();
+						System.err.println("Block event stream failed, resuming from block " + nextBlock + ": " + e);
+						Thread.sleep(RECONNECT_DELAY_MILLIS);
+					} catch (InvalidProtocolBufferException e) {
+						// No events from the block were queued, so it is received again when reading resumes
+						reconnectCount.increment();
+						System.err.println("Failed to read block " + nextBlock + ", retrying: " + e);
+						Thread.sleep(RECONNECT_DELAY_MILLIS);
+					}
+				}
+				decoded.put(END);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (RuntimeException e) {
+				putFailure(e);
+			}
+		}
+
+		private void putFailure(final RuntimeException e) {
+			try {
+				decoded.put(e);
+			} catch (InterruptedException interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private void readBlock(final Block block) throws InterruptedException, InvalidProtocolBufferException {
+			for (ChaincodeEvent event : BlockEvents.chaincodeEvents(block)) {
+				if (!event.getChaincodeName().equals(chaincodeName)) {
+					continue;
+				}
+
+				T result = decoder.apply(event);
+				if (result != null) {
+					decoded.put(result);
+				}
+				eventCount.increment();
+			}
+
+			blockCount.increment();
+		}
+
+		@SuppressWarnings("unchecked")
+		void drainTo(final Consumer<T> consumer) throws InterruptedException {
+			while (true) {
+				Object item = decoded.take();
+				if (item == END) {
+					return;
+				}
+				if (item instanceof RuntimeException) {
+					throw new CompletionException("Failed to replay blocks " + firstBlock + " to " + lastBlock,
+							(RuntimeException) item);
+				}
+				consumer.accept((T) item);
+			}
+		}
+
+		void cancel() {
+			cancelled = true;
+			CloseableIterator<Block> iter = blocks;
+			if (iter != null) {
+				iter.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns each distinct string a small integer code, so that repeated values such as owners and colors can be stored
+ * in fixed-size records. Codes are assigned in order from zero and never reused. Strings are added by a single
+ * writer; lookups in either direction may be made concurrently from any thread without locking.
+ */
+public final class StringDictionary {
+	private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+	private volatile String[] values = new String[16];
+	private volatile int size = 0;
+
+	/**
+	 * Code for a string, adding it to the dictionary if it is not already present. Must only be called by the writer.
+	 */
+	public int encode(final String value) {
+		Integer code = codes.get(value);
+		if (code != null) {
+			return code;
+		}
+
+		int next = size;
+		String[] current = values;
+		if (next == current.length) {
+			current = Arrays.copyOf(current, next * 2);
+		}
+		current[next] = value;
+		values = current;
+		size = next + 1;
+		codes.put(value, next);
+		return next;
+	}
+
+	/**
+	 * Code for a string, or -1 if it is not in the dictionary.
+	 */
+	public int lookup(final String value) {
+		Integer code = codes.get(value);
+		return code != null ? code : -1;
+	}
+
+	public String decode(final int code) {
+		if (code < 0 || code >= size) {
+			throw new IllegalArgumentException("Unknown dictionary code: " + code);
+		}
+		return values[code];
+	}
+
+	public int size() {
+		return size;
+	}
+}
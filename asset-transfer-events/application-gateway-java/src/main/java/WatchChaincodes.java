@@ -0,0 +1,73 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import io.grpc.ManagedChannel;
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.Network;
+
+/**
+ * Prints events from several chaincodes on a channel using a single block event stream, through a
+ * {@link ChaincodeEventMultiplexer}. Each chaincode is given as its name, optionally followed by a colon and the name
+ * of the only event to print.
+ * <p>
+ * Usage: {@code ./gradlew watchChaincodes --args="<checkpoint file> <chaincode>[:<event name>] ..."}
+ */
+public final class WatchChaincodes {
+	private static final String channelName = "mychannel";
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: WatchChaincodes <checkpoint file> <chaincode>[:<event name>] ...");
+			System.exit(1);
+		}
+
+		ManagedChannel channel = Connections.newGrpcConnection();
+		Gateway.Builder builder = Gateway.newInstance()
+				.identity(Connections.newIdentity())
+				.signer(Connections.newSigner())
+				.connection(channel);
+
+		EventCheckpointer checkpointer = new EventCheckpointer(Paths.get(args[0]), Duration.ofMillis(100));
+		Gateway gateway = builder.connect();
+		Network network = gateway.getNetwork(channelName);
+		ChaincodeEventMultiplexer multiplexer = new ChaincodeEventMultiplexer(network, checkpointer);
+
+		for (int i = 1; i < args.length; i++) {
+			int separator = args[i].indexOf(':');
+			if (separator < 0) {
+				multiplexer.register(args[i], WatchChaincodes::print);
+			} else {
+				multiplexer.register(args[i].substring(0, separator), args[i].substring(separator + 1),
+						WatchChaincodes::print);
+			}
+		}
+
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try (checkpointer; gateway; multiplexer) {
+				System.out.print(multiplexer.summary());
+			} catch (IOException e) {
+				System.err.println("Failed to close event checkpointer: " + e);
+			} finally {
+				channel.shutdownNow();
+			}
+		}, "watch-chaincodes-shutdown"));
+
+		System.out.println("Watching chaincode events from block " + Math.max(0, checkpointer.getBlockNumber())
+				+ "; press Ctrl-C to stop");
+		multiplexer.start().join();
+	}
+
+	private static void print(final ChaincodeEvent event) {
+		System.out.println("<-- " + event.getChaincodeName() + " " + event.getEventName() + " in block "
+				+ event.getBlockNumber() + ": " + new String(event.getPayload(), StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.grpc.ManagedChannel;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.Network;
+
+/**
+ * Indexes the writes made by every transaction on a channel into a local {@link HistoryStore}, and queries the
+ * history of a key or the writes made in a time range. Indexing runs until interrupted, and continues from the last
+ * indexed block when restarted. While indexing runs, the store is queried over HTTP through a {@link QueryServer},
+ * for example with {@code curl "http://localhost:8090/history?namespace=events&key=asset1"}. Once indexing has stopped,
+ * the history and range commands query the store directly.
+ * <p>
+ * Usage:
+ * <ul>
+ * <li>{@code ./gradlew run --args="index <store directory>"}</li>
+ * <li>{@code ./gradlew run --args="history <store directory> <namespace> <key> [limit]"}</li>
+ * <li>{@code ./gradlew run --args="range <store directory> <from> <to>"}, with ISO-8601 times such as
+ * {@code 2022-01-31T12:00:00Z}</li>
+ * </ul>
+ */
+public final class App {
+	private static final String channelName = "mychannel";
+	private static final int segmentSize = 64 * 1024 * 1024;
+	private static final Duration syncInterval = Duration.ofSeconds(1);
+	private static final int queryPort = 8090;
+
+	private App() {
+		// Private constructor to prevent instantiation
+	}
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 2) {
+			usage();
+		}
+
+		Path storePath = Paths.get(args[1]);
+		switch (args[0]) {
+		case "index":
+			index(storePath);
+			break;
+		case "history":
+			if (args.length < 4) {
+				usage();
+			}
+			history(storePath, args[2], args[3], args.length > 4 ? Integer.parseInt(args[4]) : Integer.MAX_VALUE);
+			break;
+		case "range":
+			if (args.length < 4) {
+				usage();
+			}
+			range(storePath, Instant.parse(args[2]), Instant.parse(args[3]));
+			break;
+		default:
+			usage();
+		}
+	}
+
+	private static void usage() {
+		System.err.println("Usage: App index <store directory>");
+		System.err.println("       App history <store directory> <namespace> <key> [limit]");
+		System.err.println("       App range <store directory> <from> <to>");
+		System.exit(1);
+	}
+
+	private static void index(final Path storePath) throws Exception {
+		ManagedChannel channel = Connections.newGrpcConnection();
+		Gateway.Builder builder = Gateway.newInstance()
+				.identity(Connections.newIdentity())
+				.signer(Connections.newSigner())
+				.connection(channel);
+
+		HistoryStore store = new HistoryStore(storePath, segmentSize, syncInterval);
+		Gateway gateway = builder.connect();
+		Network network = gateway.getNetwork(channelName);
+		BlockIndexer indexer = new BlockIndexer(network, store);
+		QueryServer queryServer = new QueryServer(store, queryPort);
+
+		// The indexer must stop appending blocks, and queries must stop, before the store is closed
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try (store; gateway; queryServer; indexer) {
+				System.out.print(store.summary());
+			} catch (Exception e) {
+				System.err.println("Failed to close block indexer: " + e);
+			} finally {
+				channel.shutdownNow();
+			}
+		}, "block-indexer-shutdown"));
+
+		System.out.println("Indexing channel " + channelName + " from block " + (store.getLastBlockNumber() + 1)
+				+ ", serving queries on port " + queryPort + "; press Ctrl-C to stop");
+		indexer.start().join();
+	}
+
+	private static void history(final Path storePath, final String namespace, final String key, final int limit)
+			throws Exception {
+		try (HistoryStore store = new HistoryStore(storePath, segmentSize, syncInterval)) {
+			long start = System.nanoTime();
+			List<KeyVersion> history = store.getHistory(namespace, key, limit);
+			long elapsed = System.nanoTime() - start;
+
+			history.forEach(System.out::println);
+			System.out.printf("%d versions in %.3fms%n", history.size(), elapsed / 1e6);
+		}
+	}
+
+	private static void range(final Path storePath, final Instant from, final Instant to) throws Exception {
+		try (HistoryStore store = new HistoryStore(storePath, segmentSize, syncInterval)) {
+			LongAdder count = new LongAdder();
+			long start = System.nanoTime();
+			store.scanTimeRange(from, to, version -> {
+				System.out.println(version);
+				count.increment();
+			});
+			long elapsed = System.nanoTime() - start;
+
+			System.out.printf("%d writes in %.3fms%n", count.sum(), elapsed / 1e6);
+		}
+	}
+}
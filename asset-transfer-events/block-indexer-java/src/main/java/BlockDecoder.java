@@ -0,0 +1,135 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Timestamp;
+import org.hyperledger.fabric.protos.common.Block;
+import org.hyperledger.fabric.protos.common.BlockMetadataIndex;
+import org.hyperledger.fabric.protos.common.ChannelHeader;
+import org.hyperledger.fabric.protos.common.Envelope;
+import org.hyperledger.fabric.protos.common.HeaderType;
+import org.hyperledger.fabric.protos.common.Payload;
+import org.hyperledger.fabric.protos.ledger.rwset.NsReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.TxReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KVRWSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KVWrite;
+import org.hyperledger.fabric.protos.peer.ChaincodeAction;
+import org.hyperledger.fabric.protos.peer.ChaincodeActionPayload;
+import org.hyperledger.fabric.protos.peer.ProposalResponsePayload;
+import org.hyperledger.fabric.protos.peer.Transaction;
+import org.hyperledger.fabric.protos.peer.TransactionAction;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+
+/**
+ * Extracts the public write sets of every namespace from the valid endorser transactions in a full block. Writes by
+ * transactions that failed validation are skipped, since they were not applied to the world state. A valid transaction
+ * that cannot be read fails the whole block, since skipping its writes would leave a gap in the history. Private data
+ * collection hashes are not included.
+ */
+public final class BlockDecoder {
+	private BlockDecoder() {
+		// Private constructor to prevent instantiation
+	}
+
+	/**
+	 * Writes made by a block, with the latest transaction timestamp in the block.
+	 */
+	public static final class DecodedBlock {
+		private final long number;
+		private final long timestampMillis;
+		private final List<KeyVersion> writes;
+
+		DecodedBlock(final long number, final long timestampMillis, final List<KeyVersion> writes) {
+			this.number = number;
+			this.timestampMillis = timestampMillis;
+			this.writes = writes;
+		}
+
+		public long getNumber() {
+			return number;
+		}
+
+		/**
+		 * Latest creation time of any transaction in the block, or zero if the block holds no transactions.
+		 */
+		public long getTimestampMillis() {
+			return timestampMillis;
+		}
+
+		/**
+		 * Writes in the order they were applied to the world state.
+		 */
+		public List<KeyVersion> getWrites() {
+			return writes;
+		}
+	}
+
+	/**
+	 * @throws InvalidProtocolBufferException if a valid transaction in the block cannot be read.
+	 */
+	public static DecodedBlock decode(final Block block) throws InvalidProtocolBufferException {
+		long blockNumber = block.getHeader().getNumber();
+		ByteString validationCodes = block.getMetadata().getMetadata(BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE);
+		List<KeyVersion> writes = new ArrayList<>();
+		long timestamp = 0;
+
+		for (int i = 0; i < block.getData().getDataCount(); i++) {
+			boolean valid = i >= validationCodes.size() || validationCodes.byteAt(i) == TxValidationCode.VALID_VALUE;
+			try {
+				Payload payload = Payload.parseFrom(Envelope.parseFrom(block.getData().getData(i)).getPayload());
+				ChannelHeader channelHeader = ChannelHeader.parseFrom(payload.getHeader().getChannelHeader());
+				long transactionTime = toMillis(channelHeader.getTimestamp());
+				timestamp = Math.max(timestamp, transactionTime);
+
+				if (valid && channelHeader.getType() == HeaderType.ENDORSER_TRANSACTION_VALUE) {
+					readTransaction(blockNumber, i, channelHeader.getTxId(), transactionTime, payload, writes);
+				}
+			} catch (InvalidProtocolBufferException e) {
+				if (valid) {
+					throw new InvalidProtocolBufferException("Unreadable transaction " + i + " in block " + blockNumber
+							+ ": " + e.getMessage());
+				}
+				System.err.println("Skipping unreadable invalid transaction " + i + " in block " + blockNumber + ": "
+						+ e);
+			}
+		}
+
+		return new DecodedBlock(blockNumber, timestamp, writes);
+	}
+
+	private static void readTransaction(final long blockNumber, final int transactionIndex, final String transactionId,
+			final long timestampMillis, final Payload payload, final List<KeyVersion> writes)
+			throws InvalidProtocolBufferException {
+		Transaction transaction = Transaction.parseFrom(payload.getData());
+		for (TransactionAction action : transaction.getActionsList()) {
+			ChaincodeActionPayload actionPayload = ChaincodeActionPayload.parseFrom(action.getPayload());
+			ProposalResponsePayload responsePayload = ProposalResponsePayload.parseFrom(
+					actionPayload.getAction().getProposalResponsePayload());
+			ChaincodeAction chaincodeAction = ChaincodeAction.parseFrom(responsePayload.getExtension());
+			TxReadWriteSet readWriteSet = TxReadWriteSet.parseFrom(chaincodeAction.getResults());
+			if (readWriteSet.getDataModel() != TxReadWriteSet.DataModel.KV) {
+				continue;
+			}
+
+			for (NsReadWriteSet namespaceSet : readWriteSet.getNsRwsetList()) {
+				KVRWSet keyValueSet = KVRWSet.parseFrom(namespaceSet.getRwset());
+				for (KVWrite write : keyValueSet.getWritesList()) {
+					writes.add(new KeyVersion(namespaceSet.getNamespace(), write.getKey(), blockNumber,
+							transactionIndex, transactionId, timestampMillis, write.getIsDelete(),
+							write.getValue().toByteArray()));
+				}
+			}
+		}
+	}
+
+	private static long toMillis(final Timestamp timestamp) {
+		return timestamp.getSeconds() * 1000 + timestamp.getNanos() / 1_000_000;
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.protos.common.Block;
+
+/**
+ * Listens for full blocks on a channel and appends their writes to a {@link HistoryStore}. Listening starts from the
+ * block after the last one in the store, so the store itself records how far indexing has progressed and no separate
+ * checkpoint is needed. If the block event stream fails, or a block cannot be decoded, listening resumes from the next
+ * block not yet stored.
+ */
+public final class BlockIndexer implements AutoCloseable {
+	private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+	private final Network network;
+	private final HistoryStore store;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private volatile CloseableIterator<Block> blocks;
+	private volatile boolean closed = false;
+
+	public BlockIndexer(final Network network, final HistoryStore store) {
+		this.network = network;
+		this.store = store;
+	}
+
+	/**
+	 * Start indexing blocks on a background thread. The returned future completes exceptionally if a block cannot be
+	 * stored.
+	 */
+	public CompletableFuture<Void> start() {
+		return CompletableFuture.runAsync(this::listen, executor);
+	}
+
+	private void listen() {
+		while (!closed) {
+			try {
+				receiveBlocks();
+			} catch (GatewayRuntimeException e) {
+				if (closed) {
+					return;
+				}
+				System.err.println("Block event stream failed, resuming from block "
+						+ (store.getLastBlockNumber() + 1) + ": " + e);
+			} catch (InvalidProtocolBufferException e) {
+				// Nothing from the block was stored, so it is received again when listening resumes
+				System.err.println("Failed to decode block " + (store.getLastBlockNumber() + 1) + ", retrying: " + e);
+			}
+
+			if (!closed) {
+				sleep(RECONNECT_DELAY_MILLIS);
+			}
+		}
+	}
+
+	private void receiveBlocks() throws InvalidProtocolBufferException {
+		blocks = network.newBlockEventsRequest()
+				.startBlock(store.getLastBlockNumber() + 1)
+				.build()
+				.getEvents();
+
+		try {
+			while (!closed && blocks.hasNext()) {
+				BlockDecoder.DecodedBlock block = BlockDecoder.decode(blocks.next());
+				try {
+					store.append(block);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		} finally {
+			blocks.close();
+		}
+	}
+
+	private static void sleep(final long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		if (blocks != null) {
+			blocks.close();
+		}
+		executor.shutdownNow();
+
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,705 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Local store of every value written to the world state, indexed for per-key history and time range queries that
+ * {@code GetHistoryForKey} cannot serve efficiently.
+ * <p>
+ * Writes are appended as records to fixed-size memory-mapped segment files, in block order. Each write record holds
+ * the position of the previous write to the same key, so the history of a key is a chain of versions that is followed
+ * from an in-memory index of the latest version of each key. A time index holds the position of the first record of
+ * each block, keyed by block time, which is the latest transaction timestamp seen up to and including the block so
+ * that it never decreases.
+ * <p>
+ * A block is committed by a block record that follows its writes. Indexes are only updated once the block record is
+ * written, so queries never see part of a block. The indexes are saved to an index file when the store is closed.
+ * When the store is opened, they are loaded from that file and brought up to date by scanning only the segment records
+ * written after it was saved, or rebuilt by scanning every record if there is no usable index file. The scan reads
+ * just the key of each write, and anything after the last block record, left by an application that stopped part way
+ * through a block, is cleared. Each record has a checksum so that a partly written record is recognized. Segments are
+ * forced to disk periodically, so a block is durable within the sync interval of being appended.
+ * <p>
+ * Blocks are appended by a single writer. Queries may be made concurrently from any thread. The store is locked while
+ * open, so it cannot be opened more than once at a time.
+ */
+public final class HistoryStore implements AutoCloseable {
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".dat";
+	private static final int HEADER_SIZE = 4 + 4 + 1; // length, checksum, type
+	private static final int SEGMENT_END = -1;
+	private static final byte WRITE = 1;
+	private static final byte DELETE = 2;
+	private static final byte BLOCK = 3;
+	private static final int BLOCK_BODY_SIZE = 8 + 8 + 4; // block, time, write count
+	private static final int NAMESPACE_OFFSET = HEADER_SIZE + 8 + 4 + 8 + 8; // block, transaction, time, previous
+	static final String INDEX_FILE = "index.dat";
+	private static final int INDEX_MAGIC = 0x48535449; // "HSTI"
+	private static final byte INDEX_VERSION = 1;
+
+	private final Path directory;
+	private final int segmentSize;
+	private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+	private final Map<String, Long> latest = new ConcurrentHashMap<>();
+	private final TimeIndex timeIndex = new TimeIndex();
+	private final FileChannel lockChannel;
+	private final ScheduledExecutorService syncExecutor;
+	private long writePosition = 0;
+	private long writtenLimit = 0; // End of the bytes written by the latest record, which may not yet be complete
+	private volatile long committedPosition = 0;
+	private volatile long lastBlock = -1;
+	private long lastBlockPosition = -1;
+	private long lastBlockTime = 0;
+	private volatile long writeCount = 0;
+	private volatile boolean dirty = false;
+	private int firstDirtySegment = 0;
+
+	/**
+	 * Positions of the first record of each block, in block order, with non-decreasing block times.
+	 */
+	private static final class TimeIndex {
+		private long[] times = new long[1024];
+		private long[] positions = new long[1024];
+		private int count = 0;
+
+		synchronized void add(final long time, final long position) {
+			if (count == times.length) {
+				times = Arrays.copyOf(times, count * 2);
+				positions = Arrays.copyOf(positions, count * 2);
+			}
+			times[count] = time;
+			positions[count] = position;
+			count++;
+		}
+
+		/**
+		 * Index of the first block with a time at or after the given time, or the number of blocks if there is none.
+		 */
+		synchronized int firstAtOrAfter(final long time) {
+			int low = 0;
+			int high = count;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (times[middle] < time) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		synchronized long positionOf(final int index) {
+			return positions[index];
+		}
+
+		synchronized long timeOf(final int index) {
+			return times[index];
+		}
+
+		synchronized int size() {
+			return count;
+		}
+	}
+
+	/**
+	 * @param directory Directory containing the segment files.
+	 * @param segmentSize Size of each segment file, which limits the size of a single written value.
+	 * @param syncInterval Maximum time for which appended blocks are not forced to disk.
+	 */
+	public HistoryStore(final Path directory, final int segmentSize, final Duration syncInterval)
+			throws IOException {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+
+		Files.createDirectories(directory);
+		lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		if (!tryLock()) {
+			lockChannel.close();
+			throw new IllegalStateException("History store " + directory + " is already open");
+		}
+
+		for (int i = 0; Files.exists(segmentPath(i)); i++) {
+			segments.add(map(i));
+		}
+		if (segments.isEmpty()) {
+			segments.add(map(0));
+		}
+		recover(loadIndex());
+
+		syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "history-store-sync");
+			thread.setDaemon(true);
+			return thread;
+		});
+		syncExecutor.scheduleWithFixedDelay(this::syncQuietly, syncInterval.toMillis(), syncInterval.toMillis(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	private boolean tryLock() throws IOException {
+		try {
+			return lockChannel.tryLock() != null;
+		} catch (OverlappingFileLockException e) {
+			return false;
+		}
+	}
+
+	private Path segmentPath(final int segment) {
+		return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+	}
+
+	private MappedByteBuffer map(final int segment) throws IOException {
+		try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		}
+	}
+
+	/**
+	 * Load the indexes saved when the store was last closed, returning the position up to which they are complete.
+	 * The whole index file is read and checked against the segments before any of it is applied, so that the indexes
+	 * are rebuilt from the first record if the file is unreadable.
+	 */
+	private long loadIndex() {
+		Path indexPath = directory.resolve(INDEX_FILE);
+		if (!Files.exists(indexPath)) {
+			return 0;
+		}
+
+		try {
+			return readIndex(indexPath);
+		} catch (IOException e) {
+			System.err.println("Ignoring unreadable index " + indexPath + ", rebuilding from segments: " + e);
+			return 0;
+		}
+	}
+
+	private long readIndex(final Path indexPath) throws IOException {
+		long committed;
+		long blockPosition;
+		long block;
+		long blockTime;
+		long writes;
+		long[] times;
+		long[] positions;
+		Map<String, Long> keys = new HashMap<>();
+
+		CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(indexPath)),
+				new CRC32C());
+		try (DataInputStream in = new DataInputStream(checked)) {
+			if (in.readInt() != INDEX_MAGIC || in.readByte() != INDEX_VERSION) {
+				throw new IOException("Not a history store index: " + indexPath);
+			}
+			committed = in.readLong();
+			blockPosition = in.readLong();
+			block = in.readLong();
+			blockTime = in.readLong();
+			writes = in.readLong();
+
+			int blockCount = in.readInt();
+			if (blockCount < 0 || blockCount > block + 1) {
+				throw new IOException("Index holds " + blockCount + " blocks, but last block is " + block);
+			}
+			times = new long[blockCount];
+			positions = new long[blockCount];
+			for (int i = 0; i < blockCount; i++) {
+				times[i] = in.readLong();
+				positions[i] = in.readLong();
+			}
+
+			int keyCount = in.readInt();
+			for (int i = 0; i < keyCount; i++) {
+				int length = in.readInt();
+				if (length < 0 || length > segmentSize) {
+					throw new IOException("Invalid key length in index: " + length);
+				}
+				byte[] key = new byte[length];
+				in.readFully(key);
+				keys.put(new String(key, StandardCharsets.UTF_8), in.readLong());
+			}
+
+			int expected = (int) checked.getChecksum().getValue();
+			if (in.readInt() != expected) {
+				throw new IOException("Index checksum does not match");
+			}
+		}
+
+		if (block >= 0 && !isBlockRecord(blockPosition, block, committed)) {
+			throw new IOException("Index does not match segments at block " + block);
+		}
+
+		for (int i = 0; i < times.length; i++) {
+			timeIndex.add(times[i], positions[i]);
+		}
+		latest.putAll(keys);
+		lastBlock = block;
+		lastBlockPosition = blockPosition;
+		lastBlockTime = blockTime;
+		writeCount = writes;
+		return committed;
+	}
+
+	/**
+	 * Whether there is an intact record of the given block at a position, ending at the given position.
+	 */
+	private boolean isBlockRecord(final long position, final long block, final long end) {
+		int segment = (int) (position / segmentSize);
+		int offset = (int) (position % segmentSize);
+		int length = HEADER_SIZE + BLOCK_BODY_SIZE;
+		if (position < 0 || segment >= segments.size() || offset + length > segmentSize || position + length != end) {
+			return false;
+		}
+
+		ByteBuffer buffer = segments.get(segment);
+		return buffer.getInt(offset) == length
+				&& buffer.get(offset + 8) == BLOCK
+				&& buffer.getInt(offset + 4) == checksum(buffer, offset, length)
+				&& buffer.getLong(offset + HEADER_SIZE) == block;
+	}
+
+	/**
+	 * Save the indexes, so that the next time the store is opened they need only be brought up to date with blocks
+	 * appended after this point. The file is written to a temporary file, forced to disk and renamed into place.
+	 */
+	private void saveIndex() throws IOException {
+		Path indexPath = directory.resolve(INDEX_FILE);
+		Path tempPath = directory.resolve(INDEX_FILE + ".tmp");
+		try (FileChannel file = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+				CheckedOutputStream checked = new CheckedOutputStream(
+						new BufferedOutputStream(Channels.newOutputStream(file)), new CRC32C());
+				DataOutputStream out = new DataOutputStream(checked)) {
+			out.writeInt(INDEX_MAGIC);
+			out.writeByte(INDEX_VERSION);
+			out.writeLong(committedPosition);
+			out.writeLong(lastBlockPosition);
+			out.writeLong(lastBlock);
+			out.writeLong(lastBlockTime);
+			out.writeLong(writeCount);
+
+			int blockCount = timeIndex.size();
+			out.writeInt(blockCount);
+			for (int i = 0; i < blockCount; i++) {
+				out.writeLong(timeIndex.timeOf(i));
+				out.writeLong(timeIndex.positionOf(i));
+			}
+
+			out.writeInt(latest.size());
+			for (Map.Entry<String, Long> entry : latest.entrySet()) {
+				byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				out.writeInt(key.length);
+				out.write(key);
+				out.writeLong(entry.getValue());
+			}
+
+			out.writeInt((int) checked.getChecksum().getValue());
+			out.flush();
+			file.force(true);
+		}
+
+		Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Bring the indexes up to date with the blocks committed after the given position, and clear anything written
+	 * after the last of them.
+	 */
+	private void recover(final long start) throws IOException {
+		Map<String, Long> pending = new HashMap<>();
+		long position = start;
+		long blockStart = start;
+		long committed = start;
+
+		while (true) {
+			int segment = (int) (position / segmentSize);
+			int offset = (int) (position % segmentSize);
+			if (segment >= segments.size()) {
+				break;
+			}
+			ByteBuffer buffer = segments.get(segment);
+			if (offset + 4 > segmentSize || buffer.getInt(offset) == SEGMENT_END) {
+				position = (long) (segment + 1) * segmentSize;
+				continue;
+			}
+
+			int length = buffer.getInt(offset);
+			if (length < HEADER_SIZE || offset + length > segmentSize || buffer.getInt(offset + 4) != checksum(
+					buffer, offset, length)) {
+				break;
+			}
+
+			byte type = buffer.get(offset + 8);
+			if (type == BLOCK) {
+				long block = buffer.getLong(offset + HEADER_SIZE);
+				lastBlockTime = buffer.getLong(offset + HEADER_SIZE + 8);
+				writeCount += buffer.getInt(offset + HEADER_SIZE + 16);
+				latest.putAll(pending);
+				pending.clear();
+				timeIndex.add(lastBlockTime, blockStart);
+				lastBlock = block;
+				lastBlockPosition = position;
+				committed = position + length;
+				blockStart = committed;
+			} else {
+				pending.put(keyAt(position), position);
+			}
+			position += length;
+		}
+
+		if (position != committed || (int) (committed / segmentSize) < segments.size() - 1) {
+			System.err.println("Clearing " + (position - committed) + " bytes written after block " + lastBlock);
+			// A torn record may have written beyond where the scan stopped, so the rest of the segment is cleared
+			clearFrom(committed, Long.MAX_VALUE);
+		}
+		writePosition = committed;
+		committedPosition = committed;
+	}
+
+	/**
+	 * Zero the bytes from the position up to the limit, beyond which nothing has been written, and delete any later
+	 * segments. Bytes are checked a long at a time and only those not already zero are written, so that pages holding
+	 * no stale data are not dirtied.
+	 */
+	private void clearFrom(final long position, final long limit) throws IOException {
+		int segment = (int) (position / segmentSize);
+		if (segment < segments.size()) {
+			MappedByteBuffer buffer = segments.get(segment);
+			int end = (int) Math.min(segmentSize, limit - (long) segment * segmentSize);
+			int offset = (int) (position % segmentSize);
+			for (; offset + 8 <= end; offset += 8) {
+				if (buffer.getLong(offset) != 0) {
+					buffer.putLong(offset, 0);
+				}
+			}
+			for (; offset < end; offset++) {
+				buffer.put(offset, (byte) 0);
+			}
+			buffer.force();
+		}
+
+		while (segments.size() > segment + 1) {
+			segments.remove(segments.size() - 1);
+			Files.delete(segmentPath(segments.size()));
+		}
+	}
+
+	/**
+	 * Append the writes made by the next block. Blocks already in the store are ignored, so blocks may be delivered
+	 * again after the block event stream is reconnected.
+	 *
+	 * @return {@code true} if the block was appended.
+	 * @throws IllegalArgumentException if the block does not follow the last block in the store.
+	 */
+	public boolean append(final BlockDecoder.DecodedBlock block) throws IOException {
+		if (lastBlock >= 0 && block.getNumber() <= lastBlock) {
+			return false;
+		}
+		if (lastBlock >= 0 && block.getNumber() != lastBlock + 1) {
+			throw new IllegalArgumentException("Expected block " + (lastBlock + 1) + " but received "
+					+ block.getNumber());
+		}
+
+		long blockStart = writePosition;
+		long blockTime = Math.max(lastBlockTime, block.getTimestampMillis());
+		long blockPosition;
+		Map<String, Long> pending = new HashMap<>();
+		try {
+			for (KeyVersion write : block.getWrites()) {
+				String id = keyOf(write.getNamespace(), write.getKey());
+				Long previous = pending.get(id);
+				if (previous == null) {
+					previous = latest.getOrDefault(id, -1L);
+				}
+				pending.put(id, appendVersion(write, previous));
+			}
+
+			ByteBuffer record = beginRecord(BLOCK_BODY_SIZE);
+			blockPosition = writePosition;
+			record.putLong(block.getNumber()).putLong(blockTime).putInt(block.getWrites().size());
+			endRecord(record, BLOCK);
+		} catch (IOException | RuntimeException e) {
+			// Records from a failed block must not be read as part of the next block
+			clearFrom(blockStart, Math.max(writePosition, writtenLimit));
+			writePosition = blockStart;
+			throw e;
+		}
+
+		latest.putAll(pending);
+		timeIndex.add(blockTime, blockStart);
+		lastBlockTime = blockTime;
+		writeCount += block.getWrites().size();
+		lastBlock = block.getNumber();
+		lastBlockPosition = blockPosition;
+		committedPosition = writePosition;
+		dirty = true;
+		return true;
+	}
+
+	private long appendVersion(final KeyVersion version, final long previous) throws IOException {
+		byte[] namespace = version.getNamespace().getBytes(StandardCharsets.UTF_8);
+		byte[] key = version.getKey().getBytes(StandardCharsets.UTF_8);
+		byte[] transactionId = version.getTransactionId().getBytes(StandardCharsets.UTF_8);
+		byte[] value = version.getValue();
+		int bodySize = 8 + 4 + 8 + 8 + 2 + namespace.length + 4 + key.length + 2 + transactionId.length + 4
+				+ value.length;
+
+		ByteBuffer record = beginRecord(bodySize);
+		long position = writePosition;
+		record.putLong(version.getBlockNumber())
+				.putInt(version.getTransactionIndex())
+				.putLong(version.getTimestampMillis())
+				.putLong(previous)
+				.putShort((short) namespace.length).put(namespace)
+				.putInt(key.length).put(key)
+				.putShort((short) transactionId.length).put(transactionId)
+				.putInt(value.length).put(value);
+		endRecord(record, version.isDeleted() ? DELETE : WRITE);
+		return position;
+	}
+
+	/**
+	 * Position at which a record will be written, moving to the next segment if it does not fit in the current one.
+	 */
+	private long positionFor(final int bodySize) throws IOException {
+		int length = HEADER_SIZE + bodySize;
+		if (length > segmentSize) {
+			throw new IllegalArgumentException("Record of " + length + " bytes is larger than segment size");
+		}
+
+		int segment = (int) (writePosition / segmentSize);
+		int offset = (int) (writePosition % segmentSize);
+		if (offset + length > segmentSize) {
+			if (offset + 4 <= segmentSize) {
+				segments.get(segment).putInt(offset, SEGMENT_END);
+			}
+			segment++;
+			writePosition = (long) segment * segmentSize;
+		}
+		if (segment == segments.size()) {
+			segments.add(map(segment));
+		}
+		return writePosition;
+	}
+
+	/**
+	 * View of the segment positioned at the body of a new record, whose length is written last by
+	 * {@link #endRecord(ByteBuffer, byte)} so that a partly written record is never read as complete.
+	 */
+	private ByteBuffer beginRecord(final int bodySize) throws IOException {
+		long position = positionFor(bodySize);
+		writtenLimit = position + HEADER_SIZE + bodySize;
+		int offset = (int) (position % segmentSize);
+		return segments.get((int) (position / segmentSize)).duplicate()
+				.position(offset + HEADER_SIZE)
+				.limit(offset + HEADER_SIZE + bodySize);
+	}
+
+	private void endRecord(final ByteBuffer record, final byte type) {
+		int offset = (int) (writePosition % segmentSize);
+		int length = record.limit() - offset;
+		ByteBuffer buffer = segments.get((int) (writePosition / segmentSize));
+		buffer.put(offset + 8, type);
+		buffer.putInt(offset + 4, checksum(buffer, offset, length));
+		buffer.putInt(offset, length);
+		writePosition += length;
+	}
+
+	private static int checksum(final ByteBuffer buffer, final int offset, final int length) {
+		CRC32C crc = new CRC32C();
+		crc.update(buffer.duplicate().position(offset + 8).limit(offset + length));
+		return (int) crc.getValue();
+	}
+
+	private static String keyOf(final String namespace, final String key) {
+		return namespace + '\0' + key;
+	}
+
+	private KeyVersion readVersion(final long position) {
+		ByteBuffer record = segments.get((int) (position / segmentSize)).duplicate()
+				.position((int) (position % segmentSize) + 8);
+		boolean deleted = record.get() == DELETE;
+		long block = record.getLong();
+		int transactionIndex = record.getInt();
+		long timestamp = record.getLong();
+		record.getLong(); // previous version
+		String namespace = readString(record, record.getShort());
+		String key = readString(record, record.getInt());
+		String transactionId = readString(record, record.getShort());
+		byte[] value = new byte[record.getInt()];
+		record.get(value);
+
+		return new KeyVersion(namespace, key, block, transactionIndex, transactionId, timestamp, deleted, value);
+	}
+
+	/**
+	 * Index key of the write record at a position, read without decoding the rest of the record.
+	 */
+	private String keyAt(final long position) {
+		ByteBuffer record = segments.get((int) (position / segmentSize)).duplicate()
+				.position((int) (position % segmentSize) + NAMESPACE_OFFSET);
+		String namespace = readString(record, record.getShort());
+		String key = readString(record, record.getInt());
+		return keyOf(namespace, key);
+	}
+
+	private long previousOf(final long position) {
+		return segments.get((int) (position / segmentSize)).getLong((int) (position % segmentSize) + HEADER_SIZE + 20);
+	}
+
+	private static String readString(final ByteBuffer record, final int length) {
+		byte[] bytes = new byte[length];
+		record.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Number of the last block in the store, or -1 if the store is empty.
+	 */
+	public long getLastBlockNumber() {
+		return lastBlock;
+	}
+
+	/**
+	 * Latest version of a key, or {@code null} if it has never been written.
+	 */
+	public KeyVersion getLatest(final String namespace, final String key) {
+		Long position = latest.get(keyOf(namespace, key));
+		return position != null ? readVersion(position) : null;
+	}
+
+	/**
+	 * Version of a key as it was after the given block was committed, or {@code null} if it had not been written.
+	 */
+	public KeyVersion getAsOfBlock(final String namespace, final String key, final long block) {
+		Long start = latest.get(keyOf(namespace, key));
+		for (long position = start != null ? start : -1; position >= 0; position = previousOf(position)) {
+			KeyVersion version = readVersion(position);
+			if (version.getBlockNumber() <= block) {
+				return version;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Versions of a key, newest first.
+	 *
+	 * @param limit Maximum number of versions to return.
+	 */
+	public List<KeyVersion> getHistory(final String namespace, final String key, final int limit) {
+		List<KeyVersion> history = new ArrayList<>();
+		Long start = latest.get(keyOf(namespace, key));
+		for (long position = start != null ? start : -1; position >= 0 && history.size() < limit;
+				position = previousOf(position)) {
+			history.add(readVersion(position));
+		}
+		return history;
+	}
+
+	/**
+	 * Deliver every write in blocks with a block time in the given range, in block order.
+	 *
+	 * @param from Start of the range, inclusive.
+	 * @param to End of the range, exclusive.
+	 */
+	public void scanTimeRange(final Instant from, final Instant to, final Consumer<KeyVersion> consumer) {
+		long committed = committedPosition;
+		int first = timeIndex.firstAtOrAfter(from.toEpochMilli());
+		int end = timeIndex.firstAtOrAfter(to.toEpochMilli());
+		if (first >= end) {
+			return;
+		}
+
+		long position = timeIndex.positionOf(first);
+		long endPosition = end < timeIndex.size() ? Math.min(timeIndex.positionOf(end), committed) : committed;
+		while (position < endPosition) {
+			int segment = (int) (position / segmentSize);
+			int offset = (int) (position % segmentSize);
+			ByteBuffer buffer = segments.get(segment);
+			if (offset + 4 > segmentSize || buffer.getInt(offset) == SEGMENT_END) {
+				position = (long) (segment + 1) * segmentSize;
+				continue;
+			}
+
+			if (buffer.get(offset + 8) != BLOCK) {
+				consumer.accept(readVersion(position));
+			}
+			position += buffer.getInt(offset);
+		}
+	}
+
+	/**
+	 * Force appended blocks to disk.
+	 */
+	public synchronized void sync() {
+		if (!dirty) {
+			return;
+		}
+
+		dirty = false;
+		int last = segments.size() - 1;
+		for (int i = firstDirtySegment; i <= last; i++) {
+			segments.get(i).force();
+		}
+		firstDirtySegment = last;
+	}
+
+	private void syncQuietly() {
+		try {
+			sync();
+		} catch (RuntimeException e) {
+			System.err.println("Failed to sync history store: " + e);
+		}
+	}
+
+	public String summary() {
+		return String.format("Blocks: %d, last block: %d, writes: %d, keys: %d, segments: %d, bytes: %d%n",
+				timeIndex.size(), lastBlock, writeCount, latest.size(), segments.size(), committedPosition);
+	}
+
+	@Override
+	public void close() throws IOException {
+		syncExecutor.shutdownNow();
+		try {
+			dirty = true;
+			sync();
+			saveIndex();
+		} finally {
+			lockChannel.close();
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import org.hyperledger.fabric.protos.common.Block;
+import org.hyperledger.fabric.protos.common.BlockData;
+import org.hyperledger.fabric.protos.common.BlockHeader;
+import org.hyperledger.fabric.protos.common.BlockMetadata;
+import org.hyperledger.fabric.protos.common.ChannelHeader;
+import org.hyperledger.fabric.protos.common.Envelope;
+import org.hyperledger.fabric.protos.common.Header;
+import org.hyperledger.fabric.protos.common.HeaderType;
+import org.hyperledger.fabric.protos.common.Payload;
+import org.hyperledger.fabric.protos.ledger.rwset.NsReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.TxReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KVRWSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KVWrite;
+import org.hyperledger.fabric.protos.peer.ChaincodeAction;
+import org.hyperledger.fabric.protos.peer.ChaincodeActionPayload;
+import org.hyperledger.fabric.protos.peer.ChaincodeEndorsedAction;
+import org.hyperledger.fabric.protos.peer.ProposalResponsePayload;
+import org.hyperledger.fabric.protos.peer.Transaction;
+import org.hyperledger.fabric.protos.peer.TransactionAction;
+
+/**
+ * Measures {@link HistoryStore} ingest and query throughput with synthetic blocks as the size of written values
+ * grows. Ingest time covers decoding each full block and appending its writes, but not building the block. Queries
+ * read the full history and an earlier version of random keys, and scan the writes in a tenth of the time covered by
+ * the blocks. The store is then reopened twice: first loading the indexes saved when it was closed, and then with the
+ * saved indexes deleted, which measures the time taken to rebuild them from the segments.
+ * <p>
+ * Usage: {@code ./gradlew ingestBenchmark --args="[blocks] [transactions per block] [writes per transaction] [keys]"}
+ */
+public final class IngestBenchmark {
+	private static final int[] VALUE_SIZES = { 100, 1000, 4000 };
+	private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+	private static final int QUERIES = 10_000;
+	private static final long BLOCK_INTERVAL_MILLIS = 2000;
+
+	private IngestBenchmark() {
+		// Private constructor to prevent instantiation
+	}
+
+	public static void main(final String[] args) throws Exception {
+		int blockCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int transactionsPerBlock = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int writesPerTransaction = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int keyCount = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+
+		System.out.println("value bytes, blocks/second, writes/second, MB/second, history query us, as-of query us,"
+				+ " range writes/second, reopen ms, rebuild ms");
+		for (int valueSize : VALUE_SIZES) {
+			Path directory = Files.createTempDirectory("history-store");
+			try {
+				run(directory, valueSize, blockCount, transactionsPerBlock, writesPerTransaction, keyCount);
+			} finally {
+				deleteRecursively(directory);
+			}
+		}
+	}
+
+	private static void run(final Path directory, final int valueSize, final int blockCount,
+			final int transactionsPerBlock, final int writesPerTransaction, final int keyCount) throws IOException {
+		Random random = new Random(valueSize);
+		byte[] value = new byte[valueSize];
+		long startTime = Instant.parse("2022-01-01T00:00:00Z").toEpochMilli();
+		long ingestNanos = 0;
+		long writeCount = 0;
+
+		HistoryStore store = new HistoryStore(directory, SEGMENT_SIZE, Duration.ofSeconds(1));
+		for (int blockNumber = 0; blockNumber < blockCount; blockNumber++) {
+			random.nextBytes(value);
+			Block block = newBlock(blockNumber, startTime + blockNumber * BLOCK_INTERVAL_MILLIS, transactionsPerBlock,
+					writesPerTransaction, keyCount, value, random);
+
+			long start = System.nanoTime();
+			store.append(BlockDecoder.decode(block));
+			ingestNanos += System.nanoTime() - start;
+			writeCount += (long) transactionsPerBlock * writesPerTransaction;
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < QUERIES; i++) {
+			store.getHistory("basic", "key" + random.nextInt(keyCount), Integer.MAX_VALUE);
+		}
+		double historyMicros = (System.nanoTime() - start) / 1e3 / QUERIES;
+
+		start = System.nanoTime();
+		for (int i = 0; i < QUERIES; i++) {
+			store.getAsOfBlock("basic", "key" + random.nextInt(keyCount), random.nextInt(blockCount));
+		}
+		double asOfMicros = (System.nanoTime() - start) / 1e3 / QUERIES;
+
+		LongAdder rangeWrites = new LongAdder();
+		long rangeStart = startTime + blockCount / 2 * BLOCK_INTERVAL_MILLIS;
+		start = System.nanoTime();
+		store.scanTimeRange(Instant.ofEpochMilli(rangeStart),
+				Instant.ofEpochMilli(rangeStart + blockCount / 10 * BLOCK_INTERVAL_MILLIS),
+				version -> rangeWrites.increment());
+		double rangeSeconds = (System.nanoTime() - start) / 1e9;
+		store.close();
+
+		start = System.nanoTime();
+		new HistoryStore(directory, SEGMENT_SIZE, Duration.ofSeconds(1)).close();
+		double reopenMillis = (System.nanoTime() - start) / 1e6;
+
+		Files.delete(directory.resolve(HistoryStore.INDEX_FILE));
+		start = System.nanoTime();
+		new HistoryStore(directory, SEGMENT_SIZE, Duration.ofSeconds(1)).close();
+		double rebuildMillis = (System.nanoTime() - start) / 1e6;
+
+		double ingestSeconds = ingestNanos / 1e9;
+		System.out.printf("%d, %.0f, %.0f, %.1f, %.2f, %.2f, %.0f, %.0f, %.0f%n", valueSize,
+				blockCount / ingestSeconds, writeCount / ingestSeconds, writeCount * valueSize / ingestSeconds / 1e6,
+				historyMicros, asOfMicros, rangeWrites.sum() / rangeSeconds, reopenMillis, rebuildMillis);
+	}
+
+	private static Block newBlock(final long number, final long timestampMillis, final int transactionCount,
+			final int writesPerTransaction, final int keyCount, final byte[] value, final Random random) {
+		BlockData.Builder data = BlockData.newBuilder();
+		for (int i = 0; i < transactionCount; i++) {
+			KVRWSet.Builder writes = KVRWSet.newBuilder();
+			for (int j = 0; j < writesPerTransaction; j++) {
+				writes.addWrites(KVWrite.newBuilder()
+						.setKey("key" + random.nextInt(keyCount))
+						.setValue(ByteString.copyFrom(value)));
+			}
+			data.addData(newTransaction("tx" + number + "-" + i, timestampMillis, writes.build()));
+		}
+
+		byte[] validationCodes = new byte[transactionCount]; // All valid
+		return Block.newBuilder()
+				.setHeader(BlockHeader.newBuilder().setNumber(number))
+				.setData(data)
+				.setMetadata(BlockMetadata.newBuilder()
+						.addMetadata(ByteString.EMPTY)
+						.addMetadata(ByteString.EMPTY)
+						.addMetadata(ByteString.copyFrom(validationCodes)))
+				.build();
+	}
+
+	private static ByteString newTransaction(final String transactionId, final long timestampMillis,
+			final KVRWSet writes) {
+		TxReadWriteSet readWriteSet = TxReadWriteSet.newBuilder()
+				.setDataModel(TxReadWriteSet.DataModel.KV)
+				.addNsRwset(NsReadWriteSet.newBuilder().setNamespace("basic").setRwset(writes.toByteString()))
+				.build();
+		ChaincodeAction action = ChaincodeAction.newBuilder().setResults(readWriteSet.toByteString()).build();
+		ProposalResponsePayload response = ProposalResponsePayload.newBuilder()
+				.setExtension(action.toByteString())
+				.build();
+		ChaincodeActionPayload actionPayload = ChaincodeActionPayload.newBuilder()
+				.setAction(ChaincodeEndorsedAction.newBuilder().setProposalResponsePayload(response.toByteString()))
+				.build();
+		Transaction transaction = Transaction.newBuilder()
+				.addActions(TransactionAction.newBuilder().setPayload(actionPayload.toByteString()))
+				.build();
+
+		ChannelHeader channelHeader = ChannelHeader.newBuilder()
+				.setType(HeaderType.ENDORSER_TRANSACTION_VALUE)
+				.setTxId(transactionId)
+				.setTimestamp(Timestamp.newBuilder().setSeconds(timestampMillis / 1000))
+				.build();
+		Payload payload = Payload.newBuilder()
+				.setHeader(Header.newBuilder().setChannelHeader(channelHeader.toByteString()))
+				.setData(transaction.toByteString())
+				.build();
+		return Envelope.newBuilder().setPayload(payload.toByteString()).build().toByteString();
+	}
+
+	private static void deleteRecursively(final Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+}
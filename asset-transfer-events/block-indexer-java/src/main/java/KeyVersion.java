@@ -0,0 +1,84 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Value written to a key in a chaincode namespace by a valid transaction, or its deletion.
+ */
+public final class KeyVersion {
+	private final String namespace;
+	private final String key;
+	private final long blockNumber;
+	private final int transactionIndex;
+	private final String transactionId;
+	private final long timestampMillis;
+	private final boolean deleted;
+	private final byte[] value;
+
+	/**
+	 * @param transactionIndex Position of the transaction within its block.
+	 * @param timestampMillis Time at which the transaction was created by the client.
+	 */
+	public KeyVersion(final String namespace, final String key, final long blockNumber, final int transactionIndex,
+			final String transactionId, final long timestampMillis, final boolean deleted, final byte[] value) {
+		this.namespace = namespace;
+		this.key = key;
+		this.blockNumber = blockNumber;
+		this.transactionIndex = transactionIndex;
+		this.transactionId = transactionId;
+		this.timestampMillis = timestampMillis;
+		this.deleted = deleted;
+		this.value = value;
+	}
+
+	public String getNamespace() {
+		return namespace;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public long getBlockNumber() {
+		return blockNumber;
+	}
+
+	public int getTransactionIndex() {
+		return transactionIndex;
+	}
+
+	public String getTransactionId() {
+		return transactionId;
+	}
+
+	public Instant getTimestamp() {
+		return Instant.ofEpochMilli(timestampMillis);
+	}
+
+	public long getTimestampMillis() {
+		return timestampMillis;
+	}
+
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * Value written, which is empty for a deletion.
+	 */
+	public byte[] getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s %s in block %d by %s at %s", namespace, key,
+				deleted ? "deleted" : "= " + new String(value, StandardCharsets.UTF_8), blockNumber, transactionId,
+				getTimestamp());
+	}
+}
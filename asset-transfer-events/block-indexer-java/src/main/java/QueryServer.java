@@ -0,0 +1,120 @@
+/*
+ * Copyright IBM Corp. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves queries of a {@link HistoryStore} over HTTP from the process that is indexing into it, since the store cannot
+ * be opened by another process while indexing runs. Responses are plain text, with one version per line:
+ * <ul>
+ * <li>{@code GET /history?namespace=<namespace>&key=<key>[&limit=<limit>]}</li>
+ * <li>{@code GET /range?from=<from>&to=<to>}, with ISO-8601 times such as {@code 2022-01-31T12:00:00Z}</li>
+ * </ul>
+ */
+public final class QueryServer implements AutoCloseable {
+	private final HistoryStore store;
+	private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+		Thread thread = new Thread(runnable, "history-query");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final HttpServer server;
+
+	public QueryServer(final HistoryStore store, final int port) throws IOException {
+		this.store = store;
+
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.setExecutor(executor);
+		server.createContext("/history", exchange -> respond(exchange, this::history));
+		server.createContext("/range", exchange -> respond(exchange, this::range));
+		server.start();
+	}
+
+	private String history(final Map<String, String> parameters) {
+		String namespace = required(parameters, "namespace");
+		String key = required(parameters, "key");
+		String limit = parameters.get("limit");
+
+		List<KeyVersion> history = store.getHistory(namespace, key,
+				limit != null ? Integer.parseInt(limit) : Integer.MAX_VALUE);
+		StringBuilder text = new StringBuilder();
+		history.forEach(version -> text.append(version).append('\n'));
+		return text.toString();
+	}
+
+	private String range(final Map<String, String> parameters) {
+		Instant from = Instant.parse(required(parameters, "from"));
+		Instant to = Instant.parse(required(parameters, "to"));
+
+		StringBuilder text = new StringBuilder();
+		store.scanTimeRange(from, to, version -> text.append(version).append('\n'));
+		return text.toString();
+	}
+
+	private static String required(final Map<String, String> parameters, final String name) {
+		String value = parameters.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("Missing query parameter: " + name);
+		}
+		return value;
+	}
+
+	private static void respond(final HttpExchange exchange, final Function<Map<String, String>, String> query)
+			throws IOException {
+		int status = 200;
+		String text;
+		try {
+			text = query.apply(parametersOf(exchange.getRequestURI().getRawQuery()));
+		} catch (IllegalArgumentException | DateTimeParseException e) {
+			status = 400;
+			text = e.getMessage() + "\n";
+		}
+
+		byte[] body = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static Map<String, String> parametersOf(final String query) {
+		Map<String, String> parameters = new HashMap<>();
+		if (query == null) {
+			return parameters;
+		}
+
+		for (String parameter : query.split("&")) {
+			int separator = parameter.indexOf('=');
+			if (separator > 0) {
+				parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+						URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return parameters;
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
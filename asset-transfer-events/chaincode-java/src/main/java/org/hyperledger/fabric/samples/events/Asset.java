@@ -34,14 +34,23 @@ public final class Asset {
     @Property()
     private int appraisedValue;
 
+    @Property()
+    private long sequence;
+
     public Asset(final String assetID, final String color,
                  final int size, final String owner, final int value) {
+        this(assetID, color, size, owner, value, 0);
+    }
+
+    public Asset(final String assetID, final String color,
+                 final int size, final String owner, final int value, final long sequence) {
 
         this.assetID = assetID;
         this.color = color;
         this.size = size;
         this.owner = owner;
         this.appraisedValue = value;
+        this.sequence = sequence;
     }
 
     public String getAssetID() {
@@ -64,6 +73,11 @@ public final class Asset {
         return appraisedValue;
     }
 
+    // Number of times the asset has been created or modified, used to detect missed events
+    public long getSequence() {
+        return sequence;
+    }
+
     public void setOwner(final String newowner) {
         this.owner = newowner;
     }
@@ -80,6 +94,14 @@ public final class Asset {
         this.size = s;
     }
 
+    public void setSequence(final long seq) {
+        this.sequence = seq;
+    }
+
+    public Asset copy() {
+        return new Asset(assetID, color, size, owner, appraisedValue, sequence);
+    }
+
     // Serialize asset without private properties
     public byte[] serialize() {
         return serialize(null).getBytes(UTF_8);
@@ -92,6 +114,7 @@ public final class Asset {
         tMap.put("Owner",  owner);
         tMap.put("Size", Integer.toString(size));
         tMap.put("AppraisedValue", Integer.toString(appraisedValue));
+        tMap.put("Sequence", Long.toString(sequence));
         if (privateProps != null && privateProps.length() > 0) {
             tMap.put("asset_properties", new JSONObject(privateProps));
         }
@@ -112,13 +135,17 @@ public final class Asset {
         final String owner = (String) tMap.get("Owner");
         int size = 0;
         int appraisedValue = 0;
+        long sequence = 0;
         if (tMap.containsKey("Size")) {
             size = Integer.parseInt((String) tMap.get("Size"));
         }
         if (tMap.containsKey("AppraisedValue")) {
             appraisedValue = Integer.parseInt((String) tMap.get("AppraisedValue"));
         }
-        return new Asset(id, color, size, owner, appraisedValue);
+        if (tMap.containsKey("Sequence")) {
+            sequence = Long.parseLong((String) tMap.get("Sequence"));
+        }
+        return new Asset(id, color, size, owner, appraisedValue, sequence);
 
     }
 
@@ -0,0 +1,93 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.events;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compact binary encoding of asset events, carrying only the fields changed by a transaction.
+ * <p>
+ * The payload starts with the format version, which can never be the first byte of a JSON payload, followed by the
+ * asset sequence number as a varint and the asset ID. Each changed field follows as a field ID and its value.
+ * Strings are encoded as a varint length and UTF-8 bytes, and integers as zigzag varints. A create event carries
+ * every field, a transfer only the owner, an update the fields whose values changed, and a delete no fields.
+ * <p>
+ * Consumers rebuild the full asset state by applying each event to the state from the previous event for the same
+ * asset, using the sequence number to detect missed events.
+ */
+public final class AssetEvent {
+
+    static final byte COMPACT_FORMAT_VERSION = 1;
+    static final byte COLOR = 1;
+    static final byte SIZE = 2;
+    static final byte OWNER = 3;
+    static final byte APPRAISED_VALUE = 4;
+
+    private AssetEvent() {
+        // Private constructor to prevent instantiation
+    }
+
+    /**
+     * Encode the changes made to an asset by a transaction.
+     *
+     * @param before the asset before the transaction, or null if it was created
+     * @param after the asset after the transaction, or null if it was deleted
+     * @return the compact event payload
+     */
+    public static byte[] encodeCompact(final Asset before, final Asset after) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(COMPACT_FORMAT_VERSION);
+
+        if (after == null) {
+            writeVarLong(out, before.getSequence() + 1);
+            writeString(out, before.getAssetID());
+            return out.toByteArray();
+        }
+
+        writeVarLong(out, after.getSequence());
+        writeString(out, after.getAssetID());
+
+        if (after.getColor() != null && (before == null || !Objects.equals(before.getColor(), after.getColor()))) {
+            out.write(COLOR);
+            writeString(out, after.getColor());
+        }
+        if (before == null || before.getSize() != after.getSize()) {
+            out.write(SIZE);
+            writeVarLong(out, zigzag(after.getSize()));
+        }
+        if (after.getOwner() != null && (before == null || !Objects.equals(before.getOwner(), after.getOwner()))) {
+            out.write(OWNER);
+            writeString(out, after.getOwner());
+        }
+        if (before == null || before.getAppraisedValue() != after.getAppraisedValue()) {
+            out.write(APPRAISED_VALUE);
+            writeVarLong(out, zigzag(after.getAppraisedValue()));
+        }
+
+        return out.toByteArray();
+    }
+
+    private static long zigzag(final int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xffffffffL;
+    }
+
+    private static void writeString(final ByteArrayOutputStream out, final String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarLong(final ByteArrayOutputStream out, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7fL) != 0) {
+            out.write((int) (remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+}
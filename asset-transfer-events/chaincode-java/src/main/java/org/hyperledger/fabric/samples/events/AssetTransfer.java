@@ -47,6 +47,8 @@ public final class AssetTransfer implements ContractInterface {
 
     static final String IMPLICIT_COLLECTION_NAME_PREFIX = "_implicit_org_";
     static final String PRIVATE_PROPS_KEY = "asset_properties";
+    static final String EVENT_FORMAT_KEY = "event_format";
+    static final String COMPACT_EVENT_FORMAT = "compact";
 
     /**
      * Retrieves the asset details with the specified ID
@@ -68,7 +70,8 @@ public final class AssetTransfer implements ContractInterface {
      * Creates a new asset on the ledger. Saves the passed private data (asset properties) from transient map input.
      *
      * @param ctx            the transaction context
-     *                       Transient map with asset_properties key with asset json as value
+     *                       Transient map with asset_properties key with asset json as value,
+     *                       and optionally event_format key with value compact to emit a compact event
      * @param assetID
      * @param color
      * @param size
@@ -100,7 +103,7 @@ public final class AssetTransfer implements ContractInterface {
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
         }
 
-        Asset asset = new Asset(assetID, color, size, owner, appraisedValue);
+        Asset asset = new Asset(assetID, color, size, owner, appraisedValue, 1);
 
         savePrivateData(ctx, assetID);
         assetJSON = asset.serialize();
@@ -109,7 +112,7 @@ public final class AssetTransfer implements ContractInterface {
         stub.putState(assetID, assetJSON);
         // add Event data to the transaction data. Event will be published after the block containing
         // this transaction is committed
-        stub.setEvent("CreateAsset", assetJSON);
+        setEvent(ctx, "CreateAsset", null, asset);
         return asset;
     }
 
@@ -140,15 +143,17 @@ public final class AssetTransfer implements ContractInterface {
         }
         System.out.printf("TransferAsset: verify asset %s exists\n", assetID);
         Asset thisAsset = getState(ctx, assetID);
+        Asset previous = thisAsset.copy();
         // Transfer asset to new owner
         thisAsset.setOwner(newOwner);
+        thisAsset.setSequence(thisAsset.getSequence() + 1);
 
         System.out.printf(" Transfer Asset: ID %s to owner %s\n", assetID, newOwner);
         savePrivateData(ctx, assetID); // save private data if any
         byte[] assetJSON = thisAsset.serialize();
 
         stub.putState(assetID, assetJSON);
-        stub.setEvent("TransferAsset", assetJSON); //publish Event
+        setEvent(ctx, "TransferAsset", previous, thisAsset); //publish Event
     }
 
     /**
@@ -179,6 +184,7 @@ public final class AssetTransfer implements ContractInterface {
         }
         // reads from the Statedb. Check if asset already exists
         Asset asset = getState(ctx, assetID);
+        Asset previous = asset.copy();
 
         if (owner != null) {
             asset.setOwner(owner);
@@ -192,12 +198,13 @@ public final class AssetTransfer implements ContractInterface {
         if (appraisedValue > 0) {
             asset.setAppraisedValue(appraisedValue);
         }
+        asset.setSequence(asset.getSequence() + 1);
 
         savePrivateData(ctx, assetID);
         byte[] assetJSON = asset.serialize();
         System.out.printf("UpdateAsset Put: ID %s Data %s\n", assetID, new String(assetJSON));
         stub.putState(assetID, assetJSON);
-        stub.setEvent("UpdateAsset", assetJSON); //publish Event
+        setEvent(ctx, "UpdateAsset", previous, asset); //publish Event
         return asset;
     }
 
@@ -217,7 +224,26 @@ public final class AssetTransfer implements ContractInterface {
         // delete private details of asset
         removePrivateData(ctx, assetID);
         stub.delState(assetID);         // delete the key from Statedb
-        stub.setEvent("DeleteAsset", asset.serialize()); //publish Event
+        setEvent(ctx, "DeleteAsset", asset, null); //publish Event
+    }
+
+    // Publish the asset as JSON, or only its changes in compact form if requested in the transient map
+    private void setEvent(final Context ctx, final String eventName, final Asset before, final Asset after) {
+        byte[] payload;
+        if (isCompactEventRequested(ctx)) {
+            payload = AssetEvent.encodeCompact(before, after);
+        } else {
+            payload = after != null ? after.serialize() : before.serialize();
+        }
+        ctx.getStub().setEvent(eventName, payload);
+    }
+
+    private boolean isCompactEventRequested(final Context ctx) {
+        Map<String, byte[]> transientMap = ctx.getStub().getTransient();
+        if (transientMap == null || !transientMap.containsKey(EVENT_FORMAT_KEY)) {
+            return false;
+        }
+        return COMPACT_EVENT_FORMAT.equals(new String(transientMap.get(EVENT_FORMAT_KEY), UTF_8));
     }
 
     private Asset getState(final Context ctx, final String assetID) {
@@ -64,4 +64,8 @@ pushd ../asset-transfer-events/application-gateway-java
 print "Executing application"
 ./gradlew run
 popd
+print "Building Java block indexer"
+pushd ../asset-transfer-events/block-indexer-java
+./gradlew build
+popd
 stopNetwork